@@ -1,9 +1,13 @@
 package io.gengdy.pan;
 
 import io.gengdy.pan.model.Paper;
+import io.gengdy.pan.model.TaskReport;
 import io.gengdy.pan.service.ArxivCrawlerService;
+import io.gengdy.pan.service.DistributedTaskService;
 import io.gengdy.pan.service.GeminiAIService;
 import io.gengdy.pan.service.MailSenderService;
+import io.gengdy.pan.service.PaperHistoryService;
+import io.gengdy.pan.service.TopicClusterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -24,17 +28,26 @@ public class ArxivSummaryMailerApplication implements CommandLineRunner
     private final ArxivCrawlerService crawlerService;
     private final GeminiAIService geminiAIService;
     private final MailSenderService mailSenderService;
+    private final DistributedTaskService distributedTaskService;
+    private final PaperHistoryService paperHistoryService;
+    private final TopicClusterService topicClusterService;
 
     @Value("${pan.mode:deamon}")
     private String mode;
 
     public ArxivSummaryMailerApplication(ArxivCrawlerService crawlerService,
                             GeminiAIService geminiAIService,
-                            MailSenderService mailSenderService)
+                            MailSenderService mailSenderService,
+                            DistributedTaskService distributedTaskService,
+                            PaperHistoryService paperHistoryService,
+                            TopicClusterService topicClusterService)
     {
         this.crawlerService = crawlerService;
         this.geminiAIService = geminiAIService;
         this.mailSenderService = mailSenderService;
+        this.distributedTaskService = distributedTaskService;
+        this.paperHistoryService = paperHistoryService;
+        this.topicClusterService = topicClusterService;
     }
 
     public static void main(String[] args)
@@ -52,6 +65,16 @@ public class ArxivSummaryMailerApplication implements CommandLineRunner
             executeTask();
             logger.info("[Mode: One-shot] Task finished. Exiting system.");
             System.exit(0);
+        } else if (mode.equalsIgnoreCase("coordinator"))
+        {
+            logger.info("[Mode: Coordinator] Planning distributed run...");
+            boolean ok = distributedTaskService.coordinate().isSuccess();
+            logger.info("[Mode: Coordinator] Run finished. Exiting system.");
+            System.exit(ok ? 0 : 1);
+        } else if (mode.equalsIgnoreCase("worker"))
+        {
+            logger.info("[Mode: Worker] Waiting for tasks...");
+            distributedTaskService.runWorker();
         } else
         {
             logger.info("[Mode: Daemon] System is running and waiting for scheduled trigger...");
@@ -68,33 +91,54 @@ public class ArxivSummaryMailerApplication implements CommandLineRunner
         }
     }
 
-    private void executeTask()
+    /**
+     * Runs crawl -> summarize -> mail once and reports how long each stage took.
+     */
+    public TaskReport executeTask()
     {
-        long start = System.currentTimeMillis();
+        TaskReport report = new TaskReport();
         try
         {
             logger.info(">>> 1. Starting Arxiv Crawler...");
+            long stageStart = System.currentTimeMillis();
             List<Paper> papers = crawlerService.fetchTodayPapers();
             logger.info(">>> Fetched " + papers.size() + " papers.");
+            papers = paperHistoryService.filterChanged(papers);
+            report.setCrawlMillis(System.currentTimeMillis() - stageStart);
+            report.setPapers(papers.size());
 
             if (papers.isEmpty())
             {
-                logger.info(">>> No new papers found today. Workflow ended.");
-                return;
+                logger.info(">>> No new or changed papers found today. Workflow ended.");
+                report.setSuccess(true);
+                return report;
             }
 
             logger.info(">>> 2. Generating AI Summaries (Gemini)...");
-            geminiAIService.summarizePaper(papers);
+            stageStart = System.currentTimeMillis();
+            geminiAIService.summarizePaper(paperHistoryService.needingSummary(papers));
+            report.setSummarizeMillis(System.currentTimeMillis() - stageStart);
 
             logger.info(">>> 3. Sending Email Digest...");
-            mailSenderService.sendDailyPaperDigest(papers);
+            stageStart = System.currentTimeMillis();
+            papers = topicClusterService.cluster(papers);
+            boolean sent = mailSenderService.sendDailyPaperDigest(papers);
+            report.setMailMillis(System.currentTimeMillis() - stageStart);
+            if (!sent)
+            {
+                logger.error(">>> Digest was not sent, papers stay pending for the next run.");
+                return report;
+            }
+            paperHistoryService.record(papers);
+            topicClusterService.commit();
 
-            long duration = System.currentTimeMillis() - start;
-            logger.info(">>> Workflow completed successfully in " + duration + " ms.");
+            report.setSuccess(true);
+            logger.info(">>> Workflow completed successfully in " + report.getTotalMillis() + " ms. " + report);
         } catch (Exception e)
         {
             logger.error(">>> Workflow Failed!");
             e.printStackTrace();
         }
+        return report;
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package io.gengdy.pan.config;
 
 import com.google.genai.Client;
+import com.google.genai.types.HttpOptions;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,6 +12,19 @@ public class ServiceConfig
     @Value("${gemini.api-key}")
     private String apiKey;
 
+    /**
+     * Optional endpoint override, e.g. a local stub server for replay and load tests.
+     */
+    @Value("${gemini.base-url:}")
+    private String baseUrl;
+
+    /**
+     * Transport timeout for every model request, so a call that hangs before its first byte
+     * (connect, waiting for headers) ends on its own instead of holding a reader thread.
+     */
+    @Value("${gemini.http-timeout-ms:${gemini.call-timeout-ms:60000}}")
+    private int httpTimeoutMs;
+
     @Bean
     public Client geminiClient()
     {
@@ -18,6 +32,15 @@ public class ServiceConfig
         {
             throw new RuntimeException("Gemini apiKey is not configured.");
         }
-        return Client.builder().apiKey(apiKey).build();
+        HttpOptions.Builder httpOptions = HttpOptions.builder();
+        if (httpTimeoutMs > 0)
+        {
+            httpOptions.timeout(httpTimeoutMs);
+        }
+        if (baseUrl != null && !baseUrl.isBlank())
+        {
+            httpOptions.baseUrl(baseUrl.trim());
+        }
+        return Client.builder().apiKey(apiKey).httpOptions(httpOptions.build()).build();
     }
 }
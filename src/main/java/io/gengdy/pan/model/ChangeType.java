@@ -0,0 +1,28 @@
+package io.gengdy.pan.model;
+
+/**
+ * How a crawled paper relates to what earlier digests already contained.
+ */
+public enum ChangeType
+{
+    /**
+     * Never mailed before.
+     */
+    NEW,
+    /**
+     * Never mailed before, first version submitted well before it was listed (late arrival or late cross-list).
+     */
+    LATE,
+    /**
+     * Mailed before, the abstract has changed since.
+     */
+    REVISED,
+    /**
+     * Mailed before, new version with the same abstract.
+     */
+    NEW_VERSION,
+    /**
+     * Mailed before, nothing changed.
+     */
+    UNCHANGED
+}
@@ -1,5 +1,7 @@
 package io.gengdy.pan.model;
 
+import java.time.LocalDate;
+
 public class Paper
 {
     private final String id;
@@ -7,7 +9,17 @@ public class Paper
     private final String authors;
     private final String abstractText;
     private final String url;
+    private String version;          // e.g., v2, empty if unknown
+    private LocalDate createdDate;   // first submission
+    private LocalDate updatedDate;   // OAI datestamp, i.e. when it was (re)listed
+    private ChangeType changeType = ChangeType.NEW;
     private String aiSummary;
+    private boolean summaryPartial;
+    private int inputTokens;
+    private int outputTokens;
+    private int topicId = -1;        // cluster id from TopicClusterService, -1 if not clustered
+    private String topicLabel;       // null for papers without related papers that day
+    private String duplicateOf;      // id of a near-identical paper in the same digest
 
     public Paper(String id, String title, String authors,
                  String abstractText, String url)
@@ -44,6 +56,46 @@ public class Paper
         return url;
     }
 
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(String version)
+    {
+        this.version = version;
+    }
+
+    public LocalDate getCreatedDate()
+    {
+        return createdDate;
+    }
+
+    public void setCreatedDate(LocalDate createdDate)
+    {
+        this.createdDate = createdDate;
+    }
+
+    public LocalDate getUpdatedDate()
+    {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(LocalDate updatedDate)
+    {
+        this.updatedDate = updatedDate;
+    }
+
+    public ChangeType getChangeType()
+    {
+        return changeType;
+    }
+
+    public void setChangeType(ChangeType changeType)
+    {
+        this.changeType = changeType;
+    }
+
     public String getAiSummary()
     {
         return aiSummary;
@@ -54,6 +106,69 @@ public class Paper
         this.aiSummary = aiSummary;
     }
 
+    /**
+     * True when the summary was cut off by a deadline before the model finished.
+     */
+    public boolean isSummaryPartial()
+    {
+        return summaryPartial;
+    }
+
+    public void setSummaryPartial(boolean summaryPartial)
+    {
+        this.summaryPartial = summaryPartial;
+    }
+
+    public int getInputTokens()
+    {
+        return inputTokens;
+    }
+
+    public void setInputTokens(int inputTokens)
+    {
+        this.inputTokens = inputTokens;
+    }
+
+    public int getOutputTokens()
+    {
+        return outputTokens;
+    }
+
+    public void setOutputTokens(int outputTokens)
+    {
+        this.outputTokens = outputTokens;
+    }
+
+    public int getTopicId()
+    {
+        return topicId;
+    }
+
+    public void setTopicId(int topicId)
+    {
+        this.topicId = topicId;
+    }
+
+    public String getTopicLabel()
+    {
+        return topicLabel;
+    }
+
+    public void setTopicLabel(String topicLabel)
+    {
+        this.topicLabel = topicLabel;
+    }
+
+    public String getDuplicateOf()
+    {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(String duplicateOf)
+    {
+        this.duplicateOf = duplicateOf;
+    }
+
     @Override
     public String toString()
     {
@@ -63,7 +178,13 @@ public class Paper
                 ", authors='" + authors + '\'' +
                 ", abstractText='" + abstractText + '\'' +
                 ", url='" + url + '\'' +
+                ", version='" + version + '\'' +
+                ", changeType=" + changeType +
                 ", aiSummary='" + aiSummary + '\'' +
+                ", summaryPartial=" + summaryPartial +
+                ", inputTokens=" + inputTokens +
+                ", outputTokens=" + outputTokens +
+                ", topicId=" + topicId +
                 '}';
     }
 }
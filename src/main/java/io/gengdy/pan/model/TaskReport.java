@@ -0,0 +1,84 @@
+package io.gengdy.pan.model;
+
+/**
+ * Timing of one crawl -> summarize -> mail run, used for logging and load tests.
+ */
+public class TaskReport
+{
+    private int papers;
+    private long crawlMillis;
+    private long summarizeMillis;
+    private long mailMillis;
+    private boolean success;
+
+    public int getPapers()
+    {
+        return papers;
+    }
+
+    public void setPapers(int papers)
+    {
+        this.papers = papers;
+    }
+
+    public long getCrawlMillis()
+    {
+        return crawlMillis;
+    }
+
+    public void setCrawlMillis(long crawlMillis)
+    {
+        this.crawlMillis = crawlMillis;
+    }
+
+    public long getSummarizeMillis()
+    {
+        return summarizeMillis;
+    }
+
+    public void setSummarizeMillis(long summarizeMillis)
+    {
+        this.summarizeMillis = summarizeMillis;
+    }
+
+    public long getMailMillis()
+    {
+        return mailMillis;
+    }
+
+    public void setMailMillis(long mailMillis)
+    {
+        this.mailMillis = mailMillis;
+    }
+
+    public long getTotalMillis()
+    {
+        return crawlMillis + summarizeMillis + mailMillis;
+    }
+
+    public boolean isSuccess()
+    {
+        return success;
+    }
+
+    public void setSuccess(boolean success)
+    {
+        this.success = success;
+    }
+
+    /**
+     * Papers per second for a stage that took the given time.
+     */
+    public double throughput(long millis)
+    {
+        return millis <= 0 ? 0 : papers * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("TaskReport{papers=%d, crawl=%d ms (%.1f/s), summarize=%d ms (%.1f/s), mail=%d ms (%.1f/s), success=%s}",
+                papers, crawlMillis, throughput(crawlMillis), summarizeMillis, throughput(summarizeMillis),
+                mailMillis, throughput(mailMillis), success);
+    }
+}
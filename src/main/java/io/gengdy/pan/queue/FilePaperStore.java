@@ -0,0 +1,172 @@
+package io.gengdy.pan.queue;
+
+import io.gengdy.pan.model.ChangeType;
+import io.gengdy.pan.model.Paper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * FilePaperStore
+ * <p>
+ * Shared result store for distributed runs: papers/{runId}/{paperId}.paper, one .properties
+ * file per paper. Crawl workers create entries, summarize workers overwrite them with the
+ * summary, the coordinator reads them all back to build the digest.
+ * <p>
+ * Only {@link #createRun(String)} creates a run directory. Writes into a run that was deleted
+ * fail with NoSuchFileException instead of leaving an orphaned directory behind.
+ */
+public class FilePaperStore
+{
+    private static final String SUFFIX = ".paper";
+
+    private final Path root;
+    private final Path tmpDir;
+
+    public FilePaperStore(Path root) throws IOException
+    {
+        this.root = Files.createDirectories(root.resolve("papers"));
+        this.tmpDir = Files.createDirectories(root.resolve("tmp"));
+    }
+
+    public void createRun(String runId) throws IOException
+    {
+        Files.createDirectories(root.resolve(runId));
+    }
+
+    /**
+     * Stores the paper only if it is not there yet (first crawler wins on cross-listed papers).
+     */
+    public boolean create(String runId, Paper paper) throws IOException
+    {
+        Path target = file(runId, paper.getId());
+        Path tmp = writeTmp(paper);
+        try
+        {
+            Files.createLink(target, tmp); // atomic, fails if present
+            return true;
+        } catch (FileAlreadyExistsException e)
+        {
+            return false;
+        } finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public void save(String runId, Paper paper) throws IOException
+    {
+        Path tmp = writeTmp(paper);
+        try
+        {
+            Files.move(tmp, file(runId, paper.getId()), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public Paper load(String runId, String paperId) throws IOException
+    {
+        return read(file(runId, paperId));
+    }
+
+    public List<Paper> loadAll(String runId) throws IOException
+    {
+        Path dir = root.resolve(runId);
+        List<Paper> papers = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return papers;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + SUFFIX))
+        {
+            for (Path p : ds) papers.add(read(p));
+        }
+        papers.sort(Comparator.comparing(Paper::getId));
+        return papers;
+    }
+
+    public void deleteRun(String runId) throws IOException
+    {
+        Path dir = root.resolve(runId);
+        for (int attempt = 0; Files.isDirectory(dir); attempt++)
+        {
+            try (Stream<Path> files = Files.list(dir))
+            {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            try
+            {
+                Files.deleteIfExists(dir);
+            } catch (DirectoryNotEmptyException e)
+            {
+                if (attempt >= 2) throw e; // a late writer, list again
+            }
+        }
+    }
+
+    // ---------------- Internals ----------------
+
+    private Path file(String runId, String paperId)
+    {
+        return root.resolve(runId).resolve(FileWorkQueue.safeName(paperId) + SUFFIX);
+    }
+
+    private Path writeTmp(Paper paper) throws IOException
+    {
+        Properties p = new Properties();
+        p.setProperty("id", paper.getId());
+        p.setProperty("title", nullToEmpty(paper.getTitle()));
+        p.setProperty("authors", nullToEmpty(paper.getAuthors()));
+        p.setProperty("abstract", nullToEmpty(paper.getAbstractText()));
+        p.setProperty("url", nullToEmpty(paper.getUrl()));
+        p.setProperty("version", nullToEmpty(paper.getVersion()));
+        if (paper.getChangeType() != null) p.setProperty("changeType", paper.getChangeType().name());
+        if (paper.getCreatedDate() != null) p.setProperty("created", paper.getCreatedDate().toString());
+        if (paper.getUpdatedDate() != null) p.setProperty("updated", paper.getUpdatedDate().toString());
+        if (paper.getAiSummary() != null) p.setProperty("aiSummary", paper.getAiSummary());
+        p.setProperty("summaryPartial", String.valueOf(paper.isSummaryPartial()));
+        p.setProperty("inputTokens", String.valueOf(paper.getInputTokens()));
+        p.setProperty("outputTokens", String.valueOf(paper.getOutputTokens()));
+
+        Path tmp = tmpDir.resolve(FileWorkQueue.safeName(paper.getId()) + "." + UUID.randomUUID() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            p.store(w, null);
+        }
+        return tmp;
+    }
+
+    private static Paper read(Path file) throws IOException
+    {
+        Properties p = new Properties();
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            p.load(r);
+        }
+        Paper paper = new Paper(p.getProperty("id"), p.getProperty("title"), p.getProperty("authors"),
+                p.getProperty("abstract"), p.getProperty("url"));
+        paper.setVersion(p.getProperty("version", ""));
+        paper.setChangeType(ChangeType.valueOf(p.getProperty("changeType", ChangeType.NEW.name())));
+        if (p.getProperty("created") != null) paper.setCreatedDate(LocalDate.parse(p.getProperty("created")));
+        if (p.getProperty("updated") != null) paper.setUpdatedDate(LocalDate.parse(p.getProperty("updated")));
+        paper.setAiSummary(p.getProperty("aiSummary"));
+        paper.setSummaryPartial(Boolean.parseBoolean(p.getProperty("summaryPartial")));
+        paper.setInputTokens(Integer.parseInt(p.getProperty("inputTokens", "0")));
+        paper.setOutputTokens(Integer.parseInt(p.getProperty("outputTokens", "0")));
+        return paper;
+    }
+
+    private static String nullToEmpty(String s)
+    {
+        return (s == null) ? "" : s;
+    }
+}
@@ -0,0 +1,364 @@
+package io.gengdy.pan.queue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * FileWorkQueue
+ * <p>
+ * Durable work queue kept in a directory, one .properties file per task. All state changes are
+ * atomic renames, so any number of processes sharing the directory (one machine, or several
+ * nodes on a shared filesystem with atomic rename) can use it without a broker:
+ * <pre>
+ *   tmp/     half-written files, never read
+ *   ready/   waiting tasks
+ *   leased/     tasks held by a worker as id@token.task; file mtime = lease start (renewed by heartbeat)
+ *   failed/     tasks that used up their attempts
+ *   cancelled/  one marker per cancelled run
+ * </pre>
+ * Leasing moves a task from ready/ to leased/, the process that wins the rename owns it. Every
+ * lease gets a fresh token in its file name and the leased {@link WorkTask} carries it; ack,
+ * heartbeat and release only act on the file with their own token, so a worker whose lease expired
+ * cannot ack, renew or requeue the lease another worker took since. Acknowledging deletes it.
+ * A lease older than leaseMillis is considered abandoned (crashed worker) and
+ * {@link #reclaimExpired()} puts the task back into ready/. Delivery is therefore at-least-once
+ * and handlers must be idempotent. There is no ordering guarantee.
+ * <p>
+ * Reclaim and release first claim the leased file by renaming it into tmp/ (*.claim, still
+ * counted as pending) and only then publish the new copy. Publishing first would let another
+ * worker lease the new copy before the old lease is deleted, and the delete would hit that
+ * worker's live lease.
+ */
+public class FileWorkQueue
+{
+    private static final String SUFFIX = ".task";
+    private static final String CLAIM_SUFFIX = ".claim";
+    private static final char TOKEN_SEPARATOR = '@'; // never part of a task id, see safeName
+    private static final long CANCEL_MARKER_MILLIS = 30L * 24 * 3600 * 1000;
+
+    private final Path tmpDir;
+    private final Path readyDir;
+    private final Path leasedDir;
+    private final Path failedDir;
+    private final Path cancelledDir;
+    private final long leaseMillis;
+    private final int maxAttempts;
+
+    /**
+     * Test hook, runs between publishing a retried task and removing the claimed copy.
+     */
+    volatile Runnable afterRepublish;
+
+    public FileWorkQueue(Path root, long leaseMillis, int maxAttempts) throws IOException
+    {
+        this.tmpDir = Files.createDirectories(root.resolve("tmp"));
+        this.readyDir = Files.createDirectories(root.resolve("ready"));
+        this.leasedDir = Files.createDirectories(root.resolve("leased"));
+        this.failedDir = Files.createDirectories(root.resolve("failed"));
+        this.cancelledDir = Files.createDirectories(root.resolve("cancelled"));
+        this.leaseMillis = leaseMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Adds a task unless a task with the same id is already waiting or leased.
+     */
+    public boolean enqueue(WorkTask task) throws IOException
+    {
+        String name = task.getId() + SUFFIX;
+        if (Files.exists(readyDir.resolve(name))
+                || count(leasedDir, task.getId() + TOKEN_SEPARATOR + "*" + SUFFIX) > 0)
+        {
+            return false;
+        }
+        publish(task, readyDir.resolve(name));
+        return true;
+    }
+
+    /**
+     * Takes one ready task, or returns null if there is none.
+     */
+    public WorkTask lease() throws IOException
+    {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(readyDir, "*" + SUFFIX))
+        {
+            for (Path ready : ds)
+            {
+                String id = ready.getFileName().toString();
+                id = id.substring(0, id.length() - SUFFIX.length());
+                String token = UUID.randomUUID().toString();
+                Path leased = leasedDir.resolve(id + TOKEN_SEPARATOR + token + SUFFIX);
+                try
+                {
+                    // stamp the lease start first; rename keeps the mtime
+                    Files.setLastModifiedTime(ready, FileTime.fromMillis(System.currentTimeMillis()));
+                    Files.move(ready, leased, StandardCopyOption.ATOMIC_MOVE);
+                } catch (NoSuchFileException e)
+                {
+                    continue; // another worker won this one
+                }
+
+                try
+                {
+                    WorkTask task = read(leased);
+                    task.setLeaseToken(token);
+                    return task;
+                } catch (IOException | RuntimeException e)
+                {
+                    Files.move(leased, failedDir.resolve(ready.getFileName()), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renews the lease of a long-running task. Returns false if the lease had already been reclaimed.
+     */
+    public boolean heartbeat(WorkTask task) throws IOException
+    {
+        try
+        {
+            Files.setLastModifiedTime(leasedFile(task), FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e)
+        {
+            return false; // the task will run again elsewhere
+        }
+    }
+
+    /**
+     * Marks a leased task as done. Returns false if the lease had already been reclaimed.
+     */
+    public boolean ack(WorkTask task) throws IOException
+    {
+        return Files.deleteIfExists(leasedFile(task));
+    }
+
+    /**
+     * Gives a leased task back after a failure; it goes to failed/ once it used up its attempts.
+     */
+    public void release(WorkTask task) throws IOException
+    {
+        Path claimed = claim(leasedFile(task));
+        if (claimed == null) return; // lease already reclaimed, the task will run again
+        retryOrFail(task, claimed);
+    }
+
+    /**
+     * Puts tasks whose lease expired back into ready/, returns how many were reclaimed.
+     */
+    public int reclaimExpired() throws IOException
+    {
+        long cutoff = System.currentTimeMillis() - leaseMillis;
+        int reclaimed = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(leasedDir, "*" + SUFFIX))
+        {
+            for (Path leased : ds)
+            {
+                Path claimed;
+                try
+                {
+                    if (Files.getLastModifiedTime(leased).toMillis() >= cutoff) continue;
+                    claimed = claim(leased);
+                } catch (NoSuchFileException e)
+                {
+                    continue; // acked or reclaimed concurrently
+                }
+                if (claimed == null) continue;
+
+                WorkTask task;
+                try
+                {
+                    task = read(claimed);
+                } catch (IOException | RuntimeException e)
+                {
+                    Files.move(claimed, failedDir.resolve(taskFileName(leased)), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                    continue;
+                }
+                retryOrFail(task, claimed);
+                reclaimed++;
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Tasks of a run that are still ready or leased (or being reclaimed).
+     */
+    public int pending(String runId) throws IOException
+    {
+        return pendingWithPrefix(runId + "-");
+    }
+
+    /**
+     * Tasks of one type of a run that are still ready or leased (or being reclaimed).
+     */
+    public int pending(String runId, WorkTask.Type type) throws IOException
+    {
+        return pendingWithPrefix(runId + "-" + type.name().charAt(0) + "-");
+    }
+
+    public int failed(String runId) throws IOException
+    {
+        return count(failedDir, runId + "-*" + SUFFIX);
+    }
+
+    /**
+     * Gives up on a run: marks it cancelled and drops its ready and leased tasks. Workers still
+     * busy with one of its tasks find the marker and discard their result, and their ack
+     * returns false. Returns how many tasks were dropped.
+     */
+    public int cancel(String runId) throws IOException
+    {
+        Path marker = cancelledDir.resolve(safeName(runId));
+        if (!Files.exists(marker)) Files.createFile(marker);
+        pruneCancelMarkers();
+
+        int dropped = 0;
+        for (Path dir : new Path[]{readyDir, leasedDir})
+        {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, runId + "-*" + SUFFIX))
+            {
+                for (Path task : ds)
+                {
+                    if (Files.deleteIfExists(task)) dropped++;
+                }
+            }
+        }
+        return dropped;
+    }
+
+    public boolean isCancelled(String runId)
+    {
+        return Files.exists(cancelledDir.resolve(safeName(runId)));
+    }
+
+    // ---------------- Internals ----------------
+
+    private Path leasedFile(WorkTask task)
+    {
+        if (task.getLeaseToken() == null) throw new IllegalArgumentException("Task was not leased: " + task.getId());
+        return leasedDir.resolve(task.getId() + TOKEN_SEPARATOR + task.getLeaseToken() + SUFFIX);
+    }
+
+    /**
+     * id.task for a leased id@token.task.
+     */
+    private static String taskFileName(Path leased)
+    {
+        String name = leased.getFileName().toString();
+        int at = name.indexOf(TOKEN_SEPARATOR);
+        return (at < 0) ? name : name.substring(0, at) + SUFFIX;
+    }
+
+    /**
+     * Takes a leased file away from leased/ so nobody else can act on it. Returns null if it
+     * was gone already (acked, or claimed by someone else).
+     */
+    private Path claim(Path leased) throws IOException
+    {
+        Path claimed = tmpDir.resolve(leased.getFileName() + "." + UUID.randomUUID() + CLAIM_SUFFIX);
+        try
+        {
+            Files.move(leased, claimed, StandardCopyOption.ATOMIC_MOVE);
+            return claimed;
+        } catch (NoSuchFileException e)
+        {
+            return null;
+        }
+    }
+
+    private void retryOrFail(WorkTask task, Path claimed) throws IOException
+    {
+        task.setAttempts(task.getAttempts() + 1);
+        Path target = (task.getAttempts() >= maxAttempts ? failedDir : readyDir).resolve(task.getId() + SUFFIX);
+        publish(task, target);
+        Runnable hook = afterRepublish;
+        if (hook != null) hook.run();
+        Files.deleteIfExists(claimed);
+    }
+
+    private int pendingWithPrefix(String prefix) throws IOException
+    {
+        return count(readyDir, prefix + "*" + SUFFIX) + count(leasedDir, prefix + "*" + SUFFIX)
+                + count(tmpDir, prefix + "*" + SUFFIX + ".*" + CLAIM_SUFFIX);
+    }
+
+    private void pruneCancelMarkers() throws IOException
+    {
+        long cutoff = System.currentTimeMillis() - CANCEL_MARKER_MILLIS;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(cancelledDir))
+        {
+            for (Path marker : ds)
+            {
+                try
+                {
+                    if (Files.getLastModifiedTime(marker).toMillis() < cutoff) Files.deleteIfExists(marker);
+                } catch (NoSuchFileException ignored)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes to tmp/ and renames into place, so readers never see a partial file.
+     */
+    private void publish(WorkTask task, Path target) throws IOException
+    {
+        Properties p = new Properties();
+        p.putAll(task.getAttributes());
+        p.setProperty("_id", task.getId());
+        p.setProperty("_run", task.getRunId());
+        p.setProperty("_type", task.getType().name());
+        p.setProperty("_attempts", String.valueOf(task.getAttempts()));
+
+        Path tmp = tmpDir.resolve(task.getId() + "." + UUID.randomUUID() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            p.store(w, null);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static WorkTask read(Path file) throws IOException
+    {
+        Properties p = new Properties();
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            p.load(r);
+        }
+        String id = (String) p.remove("_id");
+        String runId = (String) p.remove("_run");
+        WorkTask.Type type = WorkTask.Type.valueOf((String) p.remove("_type"));
+        int attempts = Integer.parseInt((String) p.remove("_attempts"));
+        return new WorkTask(id, runId, type, p, attempts);
+    }
+
+    private static int count(Path dir, String glob) throws IOException
+    {
+        int n = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, glob))
+        {
+            for (Path ignored : ds) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Maps an arbitrary id (e.g. cs/0112017) to a safe file name.
+     */
+    static String safeName(String id)
+    {
+        return id.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
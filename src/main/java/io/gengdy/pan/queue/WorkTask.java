@@ -0,0 +1,115 @@
+package io.gengdy.pan.queue;
+
+import java.util.Properties;
+
+/**
+ * One unit of distributed work, persisted as a .properties file by {@link FileWorkQueue}.
+ * <p>
+ * - CRAWL     : attributes category, from, until (ISO dates, inclusive)
+ * - SUMMARIZE : attribute paperId, the paper itself lives in {@link FilePaperStore}
+ */
+public class WorkTask
+{
+    public enum Type
+    {
+        CRAWL, SUMMARIZE
+    }
+
+    private final String id;
+    private final String runId;
+    private final Type type;
+    private final Properties attributes;
+    private int attempts;
+    private String leaseToken; // set by FileWorkQueue.lease, identifies the lease
+
+    public WorkTask(String id, String runId, Type type)
+    {
+        this(id, runId, type, new Properties(), 0);
+    }
+
+    WorkTask(String id, String runId, Type type, Properties attributes, int attempts)
+    {
+        this.id = id;
+        this.runId = runId;
+        this.type = type;
+        this.attributes = attributes;
+        this.attempts = attempts;
+    }
+
+    public static WorkTask crawl(String runId, int seq, String category, String from, String until)
+    {
+        WorkTask t = new WorkTask(String.format("%s-C-%05d", runId, seq), runId, Type.CRAWL);
+        t.set("category", category);
+        t.set("from", from);
+        t.set("until", until);
+        return t;
+    }
+
+    public static WorkTask summarize(String runId, String paperId)
+    {
+        WorkTask t = new WorkTask(runId + "-S-" + FileWorkQueue.safeName(paperId), runId, Type.SUMMARIZE);
+        t.set("paperId", paperId);
+        return t;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getRunId()
+    {
+        return runId;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public int getAttempts()
+    {
+        return attempts;
+    }
+
+    void setAttempts(int attempts)
+    {
+        this.attempts = attempts;
+    }
+
+    String getLeaseToken()
+    {
+        return leaseToken;
+    }
+
+    void setLeaseToken(String leaseToken)
+    {
+        this.leaseToken = leaseToken;
+    }
+
+    public String get(String key)
+    {
+        return attributes.getProperty(key);
+    }
+
+    public void set(String key, String value)
+    {
+        attributes.setProperty(key, value);
+    }
+
+    Properties getAttributes()
+    {
+        return attributes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "WorkTask{" +
+                "id='" + id + '\'' +
+                ", type=" + type +
+                ", attempts=" + attempts +
+                ", attributes=" + attributes +
+                '}';
+    }
+}
@@ -7,8 +7,6 @@ import org.w3c.dom.*;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.net.URI;
-import java.net.http.*;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -27,9 +25,15 @@ import java.util.stream.Collectors;
  * Therefore, "today" is defined using the fixed timezone America/New_York
  * to align with arXiv’s publication schedule.
  * <p>
+ * --- Versions ---
+ * Records are harvested in the arXivRaw format: OAI identifiers (oai:arXiv.org:2510.14201) carry
+ * no version and the arXiv format has no version field, only arXivRaw lists one {@code <version>}
+ * element per version. The paper gets the latest version; the date of v1 is its submission date.
+ * <p>
  * Configurable properties:
  * - arxiv.oai-url       (default: https://oaipmh.arxiv.org/oai)
  * - arxiv.categories    (default: cs.AI, comma-separated list)
+ * - arxiv.* request control, see {@link OaiRequestController}
  * <p>
  * Output model: io.gengdy.pan.model.Paper
  */
@@ -48,14 +52,18 @@ public class ArxivCrawlerService
      */
     private static final ZoneId ET = ZoneId.of("America/New_York");
 
+    private static final Pattern OAI_IDENTIFIER = Pattern.compile("^oai:arXiv(?:\\.org)?:(\\S+)$");
+    private static final Pattern VERSION_SUFFIX = Pattern.compile("v\\d+$");
+
     /**
-     * Reusable HTTP client
+     * Retries, backoff and pacing for all OAI-PMH requests
      */
-    private final HttpClient http = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .proxy(java.net.ProxySelector.getDefault())
-            .followRedirects(HttpClient.Redirect.NORMAL)
-            .build();
+    private final OaiRequestController requestController;
+
+    public ArxivCrawlerService(OaiRequestController requestController)
+    {
+        this.requestController = requestController;
+    }
 
     /**
      * Fetch papers published "today" according to Eastern Time.
@@ -72,46 +80,72 @@ public class ArxivCrawlerService
      */
     public List<Paper> fetchPapersByDate(LocalDate dateET) throws Exception
     {
-        String from = dateET.format(DateTimeFormatter.ISO_DATE);
-        String until = from;
+        Map<String, Paper> merged = new LinkedHashMap<>();
 
-        List<String> categoryList = Arrays.stream(
+        for (String cat : getCategories())
+        {
+            for (Paper p : fetchPapers(cat, dateET, dateET))
+            {
+                merged.putIfAbsent(p.getId(), p); // deduplicate across categories
+            }
+        }
+
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Configured categories, e.g. [cs.AI, cs.DB].
+     */
+    public List<String> getCategories()
+    {
+        return Arrays.stream(
                         Optional.ofNullable(categoriesCsv).orElse("cs.AI").split(","))
                 .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+    }
 
-        Map<String, Paper> merged = new LinkedHashMap<>();
+    /**
+     * Fetch the papers of one category for an inclusive date window (based on Eastern Time),
+     * following resumption tokens until the list is complete.
+     */
+    public List<Paper> fetchPapers(String category, LocalDate fromET, LocalDate untilET) throws Exception
+    {
+        String from = fromET.format(DateTimeFormatter.ISO_DATE);
+        String until = untilET.format(DateTimeFormatter.ISO_DATE);
 
-        for (String cat : categoryList)
-        {
-            String set = toOaiSet(cat); // e.g., cs.AI -> cs:cs:AI
-            if (set == null) continue;
+        String set = toOaiSet(category); // e.g., cs.AI -> cs:cs:AI
+        if (set == null) return Collections.emptyList();
 
-            String token = null;
-            do
-            {
-                URI uri = (token == null)
-                        ? buildListRecordsUri(oaiUrl, from, until, set)
-                        : buildListRecordsWithTokenUri(oaiUrl, token);
+        Map<String, Paper> merged = new LinkedHashMap<>();
+        OaiRequestController.Window window = new OaiRequestController.Window();
+        String token = null;
+        do
+        {
+            URI uri = (token == null)
+                    ? buildListRecordsUri(oaiUrl, from, until, set)
+                    : buildListRecordsWithTokenUri(oaiUrl, token);
 
-                String xml = httpGet(uri);
-                ParseResult pr = parseOaiListRecords(xml);
-                token = pr.resumptionToken;
+            String xml = requestController.get(uri, window);
+            ParseResult pr = parseOaiListRecords(xml);
+            token = pr.resumptionToken;
 
-                for (ArxivItem it : pr.records)
-                {
-                    String authors = String.join(", ", it.authors);
-                    Paper p = new Paper(
-                            it.idNoVersion,
-                            it.title,
-                            authors,
-                            it.abstractText,
-                            "https://arxiv.org/abs/" + it.idNoVersion
-                    );
-                    merged.putIfAbsent(it.idNoVersion, p); // deduplicate across categories
-                }
-            } while (token != null && !token.isBlank());
-        }
+            for (ArxivItem it : pr.records)
+            {
+                String authors = String.join(", ", it.authors);
+                Paper p = new Paper(
+                        it.idNoVersion,
+                        it.title,
+                        authors,
+                        it.abstractText,
+                        "https://arxiv.org/abs/" + it.idNoVersion
+                );
+                p.setVersion(it.version);
+                p.setCreatedDate(toLocalDate(it.created));
+                p.setUpdatedDate(toLocalDate(it.datestamp));
+                merged.merge(it.idNoVersion, p, ArxivCrawlerService::latestVersion);
+            }
+        } while (token != null && !token.isBlank());
 
+        requestController.logStats(category + " " + from + ".." + until, window);
         return new ArrayList<>(merged.values());
     }
 
@@ -120,7 +154,7 @@ public class ArxivCrawlerService
     private static URI buildListRecordsUri(String base, String from, String until, String set)
     {
         String url = String.format(
-                "%s?verb=ListRecords&metadataPrefix=arXiv&from=%s&until=%s&set=%s",
+                "%s?verb=ListRecords&metadataPrefix=arXivRaw&from=%s&until=%s&set=%s",
                 base, from, until, urlEncode(set)
         );
         return URI.create(url);
@@ -132,32 +166,6 @@ public class ArxivCrawlerService
                 base, urlEncode(token)));
     }
 
-    private String httpGet(URI uri) throws Exception
-    {
-        HttpRequest req = HttpRequest.newBuilder(uri)
-                .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36")
-                .timeout(java.time.Duration.ofSeconds(20))
-                .GET()
-                .build();
-
-        int attempts = 0;
-        while (true)
-        {
-            attempts++;
-            try
-            {
-                return http.send(req, BodyHandlers.ofString()).body();
-            } catch (java.net.ConnectException | java.net.http.HttpTimeoutException e)
-            {
-                if (attempts >= 3)
-                {
-                    throw new RuntimeException("Connect failed after " + attempts + " attempts. URI=" + uri, e);
-                }
-                Thread.sleep(6000L * attempts); // Wait 60 seconds before retrying
-            }
-        }
-    }
-
     // ---------------- OAI-PMH XML Parsing ----------------
 
     private static ParseResult parseOaiListRecords(String xml) throws Exception
@@ -192,47 +200,53 @@ public class ArxivCrawlerService
                 }
             }
 
-            // Parse arXiv identifier (e.g., oai:arXiv:2501.01234v1)
-            String identifier = text(first(rec, "header", "identifier"));
-            String arxivIdWithVersion = extractArxivIdFromOaiIdentifier(identifier);
-            if (arxivIdWithVersion == null || arxivIdWithVersion.isBlank()) continue;
-            String idNoVersion = stripVersion(arxivIdWithVersion);
-
             // Metadata section
             Element md = first(rec, "metadata");
             if (md == null) continue;
-            Element arxiv = first(md, "arXiv");
-            if (arxiv == null) continue;
+            Element raw = first(md, "arXivRaw");
+            if (raw == null) continue;
 
-            String title = nullToEmpty(text(first(arxiv, "title")));
-            String abs = nullToEmpty(text(first(arxiv, "abstract")));
-            String created = text(first(arxiv, "created"));
+            // Prefer the metadata id; the header identifier is oai:arXiv.org:2501.01234
+            String id = text(first(raw, "id"));
+            if (id == null || id.isBlank())
+            {
+                id = extractArxivIdFromOaiIdentifier(text(first(rec, "header", "identifier")));
+            }
+            if (id == null || id.isBlank()) continue;
+            String idNoVersion = stripVersion(id.trim());
+
+            String title = nullToEmpty(text(first(raw, "title")));
+            String abs = nullToEmpty(text(first(raw, "abstract")));
+            String datestamp = text(first(rec, "header", "datestamp"));
+
+            // <version version="v2"><date>Thu, 16 Oct 2025 09:12:03 GMT</date>...</version>, one per version
+            String version = "";
+            Instant created = null;
+            NodeList vNodes = raw.getElementsByTagName("version");
+            for (int j = 0; j < vNodes.getLength(); j++)
+            {
+                Element v = (Element) vNodes.item(j);
+                String name = v.getAttribute("version").trim();
+                if (versionNumber(name) > versionNumber(version)) version = name;
+                if ("v1".equals(name)) created = parseRfc1123Date(text(first(v, "date")));
+            }
 
-            // Parse authors
+            // arXivRaw lists authors as one string: "A. One, B. Two and C. Three"
             List<String> authors = new ArrayList<>();
-            Element authorsEl = first(arxiv, "authors");
-            if (authorsEl != null)
+            for (String a : nullToEmpty(text(first(raw, "authors"))).split(",|\\s+and\\s+"))
             {
-                NodeList aNodes = authorsEl.getElementsByTagName("author");
-                for (int j = 0; j < aNodes.getLength(); j++)
-                {
-                    Element a = (Element) aNodes.item(j);
-                    String keyname = text(first(a, "keyname"));
-                    String forenames = text(first(a, "forenames"));
-                    String full = (forenames == null || forenames.isBlank())
-                            ? safe(keyname)
-                            : (forenames + " " + safe(keyname)).trim();
-                    if (!full.isBlank()) authors.add(full);
-                }
+                String name = a.trim().replaceAll("\\s+", " ");
+                if (!name.isEmpty()) authors.add(name);
             }
 
             ArxivItem item = new ArxivItem();
             item.idNoVersion = idNoVersion;
-            item.idWithVersion = arxivIdWithVersion;
+            item.version = version;
             item.title = title;
             item.abstractText = abs;
             item.authors = authors;
-            item.created = parseInstantDate(created);
+            item.created = created;
+            item.datestamp = parseInstantDate(datestamp == null ? null : datestamp.trim());
             out.add(item);
         }
 
@@ -255,13 +269,13 @@ public class ArxivCrawlerService
     }
 
     /**
-     * Extracts arXiv ID (with version) from oai:arXiv:XXXXvY safely.
+     * Extracts the arXiv ID from oai:arXiv.org:2501.01234 (or oai:arXiv.org:cs/0112017) safely.
      */
     private static String extractArxivIdFromOaiIdentifier(String s)
     {
         if (s == null) return null;
         s = s.trim();
-        Matcher m = Pattern.compile("^oai:arXiv:(\\S+)$").matcher(s);
+        Matcher m = OAI_IDENTIFIER.matcher(s);
         if (m.find()) return m.group(1);
         int idx = s.lastIndexOf(':');
         if (idx >= 0 && idx + 1 < s.length())
@@ -272,13 +286,36 @@ public class ArxivCrawlerService
     }
 
     /**
-     * Removes version suffix (2501.01234v2 -> 2501.01234).
+     * Removes a version suffix if present (2501.01234v2 -> 2501.01234, solv-int/9901001 unchanged).
      */
     private static String stripVersion(String arxivId)
     {
         if (arxivId == null) return null;
-        int v = arxivId.indexOf('v');
-        return (v > 0) ? arxivId.substring(0, v) : arxivId;
+        return VERSION_SUFFIX.matcher(arxivId).replaceFirst("");
+    }
+
+    private static int versionNumber(String version)
+    {
+        try
+        {
+            return (version == null || version.length() < 2) ? 0 : Integer.parseInt(version.substring(1));
+        } catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Keeps the higher version when a listing contains the same paper twice.
+     */
+    private static Paper latestVersion(Paper a, Paper b)
+    {
+        return versionNumber(b.getVersion()) > versionNumber(a.getVersion()) ? b : a;
+    }
+
+    private static LocalDate toLocalDate(Instant instant)
+    {
+        return (instant == null) ? null : instant.atZone(ZoneOffset.UTC).toLocalDate();
     }
 
     private static String urlEncode(String s)
@@ -292,6 +329,18 @@ public class ArxivCrawlerService
         }
     }
 
+    private static Instant parseRfc1123Date(String date)
+    {
+        if (date == null || date.isBlank()) return null;
+        try
+        {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (Exception e)
+        {
+            return null;
+        }
+    }
+
     private static Instant parseInstantDate(String yyyyMmDd)
     {
         if (yyyyMmDd == null || yyyyMmDd.isBlank()) return null;
@@ -328,21 +377,17 @@ public class ArxivCrawlerService
         return (s == null) ? "" : s.trim();
     }
 
-    private static String safe(String s)
-    {
-        return (s == null) ? "" : s;
-    }
-
     // ---------------- Internal Structures ----------------
 
     private static class ArxivItem
     {
         String idNoVersion;     // e.g., 2501.01234
-        String idWithVersion;   // e.g., 2501.01234v1
+        String version;         // latest listed version, e.g., v2
         String title;
         String abstractText;
         List<String> authors;
         Instant created;
+        Instant datestamp;      // last (re)listing
     }
 
     private static class ParseResult
@@ -0,0 +1,372 @@
+package io.gengdy.pan.service;
+
+import io.gengdy.pan.model.Paper;
+import io.gengdy.pan.model.TaskReport;
+import io.gengdy.pan.queue.FilePaperStore;
+import io.gengdy.pan.queue.FileWorkQueue;
+import io.gengdy.pan.queue.WorkTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DistributedTaskService
+ * <p>
+ * Coordinator/worker mode for backfills and large deployments. Several processes (on one
+ * machine or on nodes sharing pan.queue.dir) cooperate through a {@link FileWorkQueue}:
+ * <p>
+ * - coordinator : splits the date range into (category, date-window) CRAWL tasks, waits until
+ *                 the run is drained while reclaiming expired leases, then mails the digest.
+ *                 On run timeout the run is cancelled in the queue before its papers are deleted.
+ * - worker      : leases tasks; a CRAWL task classifies its papers, stores the changed ones in
+ *                 the {@link FilePaperStore} and enqueues a SUMMARIZE task for every stored paper
+ *                 that needs a summary and has none yet (a retried crawl re-enqueues what a
+ *                 crashed attempt missed), a SUMMARIZE task stores the summary. Leases are
+ *                 renewed while a task runs and acknowledged when it is done; tasks of a
+ *                 cancelled run are dropped.
+ * Change detection happens at crawl time: the coordinator exports its {@link PaperHistoryService}
+ * to history/{runId}.tsv in the queue directory, workers classify against that copy, so unchanged
+ * papers are neither stored nor summarized. The coordinator records the mailed papers afterwards.
+ * <p>
+ * Configurable properties:
+ * - pan.queue.dir                  (default: ${pan.home}/queue)
+ * - pan.queue.lease-ms             (default: 600000, a crashed worker's task returns after this)
+ * - pan.queue.max-attempts         (default: 3)
+ * - pan.queue.poll-ms              (default: 2000)
+ * - pan.distributed.from / until   (default: today ET, inclusive ISO dates)
+ * - pan.distributed.window-days    (default: 1)
+ * - pan.distributed.run-timeout-ms (default: 21600000)
+ * - pan.worker.id                  (default: host-pid)
+ */
+@Service
+public class DistributedTaskService
+{
+    private static final Logger logger = LoggerFactory.getLogger(DistributedTaskService.class);
+
+    private static final ZoneId ET = ZoneId.of("America/New_York");
+
+    private final ArxivCrawlerService crawlerService;
+    private final GeminiAIService geminiAIService;
+    private final MailSenderService mailSenderService;
+    private final PaperHistoryService paperHistoryService;
+    private final TopicClusterService topicClusterService;
+
+    @Value("${pan.queue.dir:${pan.home}/queue}")
+    private String queueDir;
+
+    @Value("${pan.queue.lease-ms:600000}")
+    private long leaseMs;
+
+    @Value("${pan.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${pan.queue.poll-ms:2000}")
+    private long pollMs;
+
+    @Value("${pan.distributed.from:}")
+    private String fromDate;
+
+    @Value("${pan.distributed.until:}")
+    private String untilDate;
+
+    @Value("${pan.distributed.window-days:1}")
+    private int windowDays;
+
+    @Value("${pan.distributed.run-timeout-ms:21600000}")
+    private long runTimeoutMs;
+
+    @Value("${pan.worker.id:}")
+    private String workerId;
+
+    private FileWorkQueue queue;
+    private FilePaperStore store;
+
+    /**
+     * Exported histories of the runs this worker saw last, keyed by run id.
+     */
+    private final Map<String, PaperHistoryService> runHistories = new LinkedHashMap<>(8, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PaperHistoryService> eldest)
+        {
+            return size() > 4;
+        }
+    };
+
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lease-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public DistributedTaskService(ArxivCrawlerService crawlerService,
+                                  GeminiAIService geminiAIService,
+                                  MailSenderService mailSenderService,
+                                  PaperHistoryService paperHistoryService,
+                                  TopicClusterService topicClusterService)
+    {
+        this.crawlerService = crawlerService;
+        this.geminiAIService = geminiAIService;
+        this.mailSenderService = mailSenderService;
+        this.paperHistoryService = paperHistoryService;
+        this.topicClusterService = topicClusterService;
+    }
+
+    // ---------------- Coordinator ----------------
+
+    /**
+     * Plans one run, waits for the workers to drain it and sends the digest.
+     */
+    public TaskReport coordinate() throws Exception
+    {
+        init();
+        TaskReport report = new TaskReport();
+        String runId = LocalDateTime.now(ET).format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        LocalDate from = fromDate.isBlank() ? LocalDate.now(ET) : LocalDate.parse(fromDate.trim());
+        LocalDate until = untilDate.isBlank() ? from : LocalDate.parse(untilDate.trim());
+        int step = Math.max(1, windowDays);
+
+        store.createRun(runId);
+        paperHistoryService.exportTo(historyExport(runId));
+        int seq = 0;
+        for (String category : crawlerService.getCategories())
+        {
+            for (LocalDate start = from; !start.isAfter(until); start = start.plusDays(step))
+            {
+                LocalDate end = start.plusDays(step - 1);
+                if (end.isAfter(until)) end = until;
+                queue.enqueue(WorkTask.crawl(runId, seq++, category,
+                        start.format(DateTimeFormatter.ISO_DATE), end.format(DateTimeFormatter.ISO_DATE)));
+            }
+        }
+        logger.info(">>> [Coordinator] Run " + runId + ": " + seq + " crawl tasks for " + from + " .. " + until);
+
+        long start = System.currentTimeMillis();
+        long deadline = start + runTimeoutMs;
+        boolean crawlDone = false;
+        while (true)
+        {
+            int reclaimed = queue.reclaimExpired();
+            if (reclaimed > 0)
+            {
+                logger.warn(">>> [Coordinator] Reclaimed " + reclaimed + " expired leases.");
+            }
+            if (!crawlDone && queue.pending(runId, WorkTask.Type.CRAWL) == 0)
+            {
+                crawlDone = true;
+                report.setCrawlMillis(System.currentTimeMillis() - start);
+            }
+            int pending = queue.pending(runId);
+            if (pending == 0)
+            {
+                break;
+            }
+            if (System.currentTimeMillis() > deadline)
+            {
+                int dropped = queue.cancel(runId);
+                logger.warn(">>> [Coordinator] Run timeout, cancelled " + dropped + " pending tasks. Mailing what is done.");
+                break;
+            }
+            Thread.sleep(pollMs);
+        }
+        report.setSummarizeMillis(System.currentTimeMillis() - start - report.getCrawlMillis());
+
+        int failed = queue.failed(runId);
+        if (failed > 0)
+        {
+            logger.warn(">>> [Coordinator] " + failed + " tasks failed permanently in run " + runId);
+        }
+
+        List<Paper> papers = store.loadAll(runId); // classified by the crawl workers
+        report.setPapers(papers.size());
+        long mailStart = System.currentTimeMillis();
+        papers = topicClusterService.cluster(papers);
+        boolean sent = papers.isEmpty() || mailSenderService.sendDailyPaperDigest(papers);
+        report.setMailMillis(System.currentTimeMillis() - mailStart);
+        if (sent)
+        {
+            paperHistoryService.record(papers);
+            topicClusterService.commit();
+        }
+        store.deleteRun(runId);
+        Files.deleteIfExists(historyExport(runId));
+
+        report.setSuccess(sent && failed == 0);
+        logger.info(">>> [Coordinator] Run " + runId + " finished. " + report);
+        return report;
+    }
+
+    // ---------------- Worker ----------------
+
+    /**
+     * Processes tasks until the thread is interrupted.
+     */
+    public void runWorker()
+    {
+        String id = resolveWorkerId();
+        logger.info(">>> [Worker " + id + "] Started, queue: " + queueDir);
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                if (!processOne(id))
+                {
+                    Thread.sleep(pollMs);
+                }
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            } catch (Exception e)
+            {
+                logger.error(">>> [Worker " + id + "] Queue error: " + e.getMessage());
+                try
+                {
+                    Thread.sleep(pollMs);
+                } catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        logger.info(">>> [Worker " + id + "] Stopped.");
+    }
+
+    /**
+     * Leases and handles one task. Returns false when the queue was empty.
+     */
+    public boolean processOne(String id) throws IOException
+    {
+        init();
+        WorkTask task = queue.lease();
+        if (task == null)
+        {
+            return false;
+        }
+        if (queue.isCancelled(task.getRunId()))
+        {
+            queue.ack(task);
+            logger.info(">>> [Worker " + id + "] Dropped " + task.getId() + ", run was cancelled.");
+            return true;
+        }
+
+        long period = Math.max(1, leaseMs / 3);
+        ScheduledFuture<?> heartbeat = heartbeats.scheduleAtFixedRate(() -> {
+            try
+            {
+                queue.heartbeat(task);
+            } catch (IOException e)
+            {
+                logger.warn("Lease heartbeat failed for " + task.getId() + ": " + e.getMessage());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        try
+        {
+            handle(task);
+            heartbeat.cancel(false);
+            if (!queue.ack(task))
+            {
+                logger.warn(">>> [Worker " + id + "] Lease of " + task.getId() + " was reclaimed before ack.");
+            }
+        } catch (Exception e)
+        {
+            heartbeat.cancel(false);
+            logger.error(">>> [Worker " + id + "] Task " + task.getId() + " failed (attempt "
+                    + (task.getAttempts() + 1) + "): " + e.getMessage());
+            queue.release(task);
+        }
+        return true;
+    }
+
+    private void handle(WorkTask task) throws Exception
+    {
+        switch (task.getType())
+        {
+            case CRAWL:
+                List<Paper> papers = crawlerService.fetchPapers(task.get("category"),
+                        LocalDate.parse(task.get("from")), LocalDate.parse(task.get("until")));
+                if (queue.isCancelled(task.getRunId())) return;
+                List<Paper> changed = historyFor(task.getRunId()).filterChanged(papers);
+                int created = 0;
+                for (Paper paper : changed)
+                {
+                    boolean isNew = store.create(task.getRunId(), paper);
+                    if (isNew) created++;
+                    if (!PaperHistoryService.needsSummary(paper)) continue;
+                    // enqueue is idempotent; a retried crawl must not lose the SUMMARIZE of a crashed attempt
+                    if (isNew || store.load(task.getRunId(), paper.getId()).getAiSummary() == null)
+                    {
+                        queue.enqueue(WorkTask.summarize(task.getRunId(), paper.getId()));
+                    }
+                }
+                logger.info("Crawled " + task.get("category") + " " + task.get("from") + ".." + task.get("until")
+                        + ": " + papers.size() + " papers, " + changed.size() + " changed, " + created + " stored.");
+                break;
+            case SUMMARIZE:
+                Paper paper = store.load(task.getRunId(), task.get("paperId"));
+                if (paper.getAiSummary() != null) return; // summarized by an earlier delivery
+                geminiAIService.summarizePaper(List.of(paper));
+                if (queue.isCancelled(task.getRunId())) return;
+                store.save(task.getRunId(), paper);
+                break;
+            default:
+                throw new IllegalStateException("Unknown task type " + task.getType());
+        }
+    }
+
+    // ---------------- Utilities ----------------
+
+    private synchronized void init() throws IOException
+    {
+        if (queue != null) return;
+        Path root = Paths.get(queueDir);
+        queue = new FileWorkQueue(root, leaseMs, maxAttempts);
+        store = new FilePaperStore(root);
+    }
+
+    private Path historyExport(String runId)
+    {
+        return Paths.get(queueDir).resolve("history").resolve(runId + ".tsv");
+    }
+
+    private PaperHistoryService historyFor(String runId)
+    {
+        synchronized (runHistories)
+        {
+            return runHistories.computeIfAbsent(runId, r -> paperHistoryService.readExport(historyExport(r)));
+        }
+    }
+
+    private String resolveWorkerId()
+    {
+        if (workerId != null && !workerId.isBlank()) return workerId.trim();
+        String host;
+        try
+        {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e)
+        {
+            host = "localhost";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
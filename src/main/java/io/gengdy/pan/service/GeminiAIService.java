@@ -1,53 +1,273 @@
 package io.gengdy.pan.service;
 
 import com.google.genai.Client;
+import com.google.genai.ResponseStream;
+import com.google.genai.types.GenerateContentConfig;
 import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import com.google.genai.types.ThinkingConfig;
 import io.gengdy.pan.model.Paper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * GeminiAIService
+ * <p>
+ * Summarizes paper abstracts with Gemini. Input is compacted by {@link PromptPreparer}
+ * and output length is capped, which keeps per-call latency and cost low.
+ * <p>
+ * --- Deadlines ---
+ * Responses are consumed through the streaming API so that text produced so far survives a
+ * timeout. Every call has its own deadline and the whole run has a global one; when a deadline
+ * hits, the paper keeps the partial summary (flagged as partial) or, if nothing arrived yet,
+ * goes into the digest with its abstract only. Failed calls fall back the same way, so one
+ * stuck or rejected call never stalls the daily run.
+ * <p>
+ * A call that hangs before its stream opens cannot be interrupted reliably, so the client also
+ * carries a transport timeout (gemini.http-timeout-ms, see ServiceConfig) and the reader pool is
+ * bounded: while MAX_STREAM_THREADS readers are still stuck, further calls fall back at once.
+ * <p>
+ * Configurable properties:
+ * - gemini.max-output-tokens (default: 384)
+ * - gemini.temperature       (default: 0.3)
+ * - gemini.thinking-budget   (default: unset, model decides; 0 disables thinking on Flash models)
+ * - gemini.call-timeout-ms   (default: 60000, per paper)
+ * - gemini.run-timeout-ms    (default: 3600000, whole summarization stage; 0 = unbounded)
+ * - gemini.http-timeout-ms   (default: gemini.call-timeout-ms, transport timeout of the client)
+ */
 @Service
 public class GeminiAIService
 {
+    private static final Logger logger = LoggerFactory.getLogger(GeminiAIService.class);
+
+    private static final int MAX_STREAM_THREADS = 4;
+
     @Value("${gemini.model-name}")
     private String modelName;
 
     @Value("${gemini.prompt}")
     private String prompt;
 
+    /**
+     * Pause between two calls to stay under the free-tier rate limit.
+     */
+    @Value("${gemini.request-interval-ms:6000}")
+    private long requestIntervalMs;
+
+    @Value("${gemini.max-output-tokens:384}")
+    private int maxOutputTokens;
+
+    @Value("${gemini.temperature:0.3}")
+    private float temperature;
+
+    @Value("${gemini.thinking-budget:}")
+    private String thinkingBudget;
+
+    @Value("${gemini.call-timeout-ms:60000}")
+    private long callTimeoutMs;
+
+    @Value("${gemini.run-timeout-ms:3600000}")
+    private long runTimeoutMs;
+
     private Client geminiClient;
 
-    public GeminiAIService(Client geminiClient)
+    private final PromptPreparer promptPreparer;
+
+    /**
+     * Streams are read on these threads so the caller can give up on them. No queue: a call is
+     * only started when a reader is free.
+     */
+    private final ExecutorService streamExecutor = new ThreadPoolExecutor(0, MAX_STREAM_THREADS,
+            60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+        Thread t = new Thread(r, "gemini-stream");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public GeminiAIService(Client geminiClient, PromptPreparer promptPreparer)
     {
         this.geminiClient = geminiClient;
+        this.promptPreparer = promptPreparer;
     }
 
     public void summarizePaper(List<Paper> papers)
     {
+        GenerateContentConfig config = buildConfig();
+        long runDeadline = (runTimeoutMs > 0) ? System.currentTimeMillis() + runTimeoutMs : Long.MAX_VALUE;
+        long totalInput = 0;
+        long totalOutput = 0;
+        int complete = 0;
+        int partial = 0;
+        int fallback = 0;
+
         for (Paper paper : papers)
         {
-            GenerateContentResponse response  = this.geminiClient.models.generateContent(
-                    modelName,
-                    prompt + "\n\nAbstract:\n" + paper.getAbstractText(),
-                    null
-            );
+            long remaining = runDeadline - System.currentTimeMillis();
+            if (remaining <= 0)
+            {
+                fallback++;
+                continue; // run deadline passed, abstract only
+            }
 
-            String summary = response.text().trim();
-            if (summary.isEmpty())
+            String input = promptPreparer.buildInput(prompt, paper.getAbstractText());
+            streamSummary(paper, input, config, Math.min(callTimeoutMs, remaining));
+            totalInput += paper.getInputTokens();
+            totalOutput += paper.getOutputTokens();
+            if (paper.getAiSummary() == null)
             {
-                continue;
+                fallback++;
+            } else if (paper.isSummaryPartial())
+            {
+                partial++;
+            } else
+            {
+                complete++;
             }
-            paper.setAiSummary(summary);
 
+            long pause = Math.min(requestIntervalMs, runDeadline - System.currentTimeMillis());
+            if (pause <= 0)
+            {
+                continue;
+            }
             try
             {
-                Thread.sleep(6000); // Sleep for 6 seconds to avoid rate limiting
+                Thread.sleep(pause); // Avoid rate limiting
             } catch (InterruptedException e)
             {
                 Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        logger.info("Gemini summaries: complete=" + complete + ", partial=" + partial
+                + ", abstract-only=" + fallback);
+        logger.info("Gemini token usage for " + papers.size() + " papers: input=" + totalInput
+                + ", output=" + totalOutput);
+    }
+
+    /**
+     * Streams one summary into the paper, waiting at most timeoutMs.
+     */
+    private void streamSummary(Paper paper, String input, GenerateContentConfig config, long timeoutMs)
+    {
+        StringBuffer text = new StringBuffer();
+        AtomicReference<GenerateContentResponseUsageMetadata> usage = new AtomicReference<>();
+        AtomicReference<ResponseStream<GenerateContentResponse>> stream = new AtomicReference<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+
+        Future<?> call;
+        try
+        {
+            call = streamExecutor.submit(() -> {
+                try (ResponseStream<GenerateContentResponse> rs =
+                             geminiClient.models.generateContentStream(modelName, input, config))
+                {
+                    stream.set(rs);
+                    for (GenerateContentResponse chunk : rs)
+                    {
+                        if (abandoned.get()) break; // the caller gave up before the stream opened
+                        String t = chunk.text();
+                        if (t != null) text.append(t);
+                        chunk.usageMetadata().ifPresent(usage::set);
+                    }
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException e)
+        {
+            logger.warn("Gemini call for " + paper.getId() + " skipped, " + MAX_STREAM_THREADS
+                    + " earlier calls are still stuck; using abstract only.");
+            recordUsage(paper, null, input, "");
+            return;
+        }
+
+        boolean finished = false;
+        try
+        {
+            call.get(timeoutMs, TimeUnit.MILLISECONDS);
+            finished = true;
+        } catch (TimeoutException e)
+        {
+            logger.warn("Gemini call for " + paper.getId() + " exceeded " + timeoutMs + " ms, using "
+                    + (text.length() > 0 ? "partial summary." : "abstract only."));
+        } catch (ExecutionException e)
+        {
+            logger.warn("Gemini call for " + paper.getId() + " failed: " + e.getCause());
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            if (!finished)
+            {
+                abandoned.set(true);
+                call.cancel(true);
+                closeQuietly(stream.get()); // unblocks the reader thread
             }
         }
+
+        String summary = text.toString().trim();
+        if (!summary.isEmpty())
+        {
+            paper.setAiSummary(finished ? summary : summary + " …");
+            paper.setSummaryPartial(!finished);
+        }
+        recordUsage(paper, usage.get(), input, summary);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        streamExecutor.shutdownNow();
+    }
+
+    private GenerateContentConfig buildConfig()
+    {
+        GenerateContentConfig.Builder builder = GenerateContentConfig.builder()
+                .maxOutputTokens(maxOutputTokens)
+                .temperature(temperature);
+        if (thinkingBudget != null && !thinkingBudget.isBlank())
+        {
+            builder.thinkingConfig(ThinkingConfig.builder()
+                    .thinkingBudget(Integer.parseInt(thinkingBudget.trim()))
+                    .build());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Uses the usage metadata reported by the API, falling back to the local estimate.
+     */
+    private static void recordUsage(Paper paper, GenerateContentResponseUsageMetadata usage,
+                                    String input, String summary)
+    {
+        int in = PromptPreparer.estimateTokens(input);
+        int out = PromptPreparer.estimateTokens(summary);
+        if (usage != null)
+        {
+            in = usage.promptTokenCount().orElse(in);
+            out = usage.candidatesTokenCount().orElse(out);
+        }
+        paper.setInputTokens(in);
+        paper.setOutputTokens(out);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable)
+    {
+        if (closeable == null) return;
+        try
+        {
+            closeable.close();
+        } catch (Exception ignored)
+        {
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,11 @@
 package io.gengdy.pan.service;
 
+import io.gengdy.pan.model.ChangeType;
 import io.gengdy.pan.model.Paper;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -11,6 +13,7 @@ import org.springframework.stereotype.Service;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,15 +35,28 @@ public class MailSenderService
     /**
      * Send a daily digest email containing today's new papers.
      * Each paper includes title, authors, abstract, and AI-generated summary.
+     * Papers that were mailed before in another form (revised, new version) or that arrived late
+     * go into a compact "Updates" section; if there are only updates, the mail is a short follow-up.
+     * New papers keep the given order and are shown under topic headings if they were clustered.
+     *
+     * @return true if a mail was sent
      */
-    public void sendDailyPaperDigest(List<Paper> papers)
+    public boolean sendDailyPaperDigest(List<Paper> papers)
     {
         if (papers == null || papers.isEmpty())
         {
             System.out.println("[MailSenderService] No new papers today, skip sending email.");
-            return;
+            return false;
         }
 
+        List<Paper> fresh = papers.stream()
+                .filter(p -> p.getChangeType() == null || p.getChangeType() == ChangeType.NEW)
+                .collect(Collectors.toList());
+        List<Paper> updates = papers.stream()
+                .filter(p -> p.getChangeType() != null && p.getChangeType() != ChangeType.NEW
+                        && p.getChangeType() != ChangeType.UNCHANGED)
+                .collect(Collectors.toList());
+
         try
         {
             MimeMessage message = mailSender.createMimeMessage();
@@ -56,29 +72,37 @@ public class MailSenderService
 
             helper.setFrom(sender);
             helper.setTo(recipientList.toArray(new String[0]));
-            helper.setSubject("[arXiv Daily Digest] " + papers.size() + " new papers today");
+            if (fresh.isEmpty())
+            {
+                helper.setSubject("[arXiv Daily Digest] Updates: " + updates.size() + " revised or late papers");
+            } else
+            {
+                helper.setSubject("[arXiv Daily Digest] " + fresh.size() + " new papers today"
+                        + (updates.isEmpty() ? "" : ", " + updates.size() + " updates"));
+            }
 
             // Build email content
             StringBuilder html = new StringBuilder();
             html.append("<html><body>");
-            html.append("<h2>📚 arXiv Daily Papers</h2>");
-            html.append("<p>Here are today's new papers from arXiv:</p>");
-            html.append("<hr/>");
-
-            for (Paper paper : papers)
+            if (!fresh.isEmpty())
             {
-                html.append("<h3><a href='").append(paper.getUrl()).append("'>")
-                        .append(paper.getTitle()).append("</a></h3>");
-                html.append("<p><strong>Authors:</strong> ").append(paper.getAuthors()).append("</p>");
-                html.append("<p><strong>Abstract:</strong> ").append(paper.getAbstractText()).append("</p>");
+                html.append("<h2>📚 arXiv Daily Papers</h2>");
+                html.append("<p>Here are today's new papers from arXiv:</p>");
+                html.append("<hr/>");
 
-                if (paper.getAiSummary() != null)
+                appendPapers(html, fresh);
+            }
+
+            if (!updates.isEmpty())
+            {
+                html.append("<h2>🔄 Updates</h2>");
+                html.append("<p>Papers from earlier digests that changed, and papers that were listed late:</p>");
+                html.append("<ul>");
+                for (Paper paper : updates)
                 {
-                    html.append("<p><strong>AI Summary:</strong> ")
-                            .append(paper.getAiSummary()).append("</p>");
+                    appendUpdate(html, paper);
                 }
-
-                html.append("<hr/>");
+                html.append("</ul><hr/>");
             }
 
             html.append("<p>Generated automatically by arXiv crawler.</p>");
@@ -91,12 +115,105 @@ public class MailSenderService
 
             System.out.printf("[MailSenderService] Email successfully sent to %d recipients (%s)%n",
                     recipientList.size(), String.join(", ", recipientList));
-
+            return true;
         }
-        catch (MessagingException e)
+        catch (MessagingException | MailException e)
         {
             System.err.println("[MailSenderService] Failed to send email: " + e.getMessage());
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Papers in the order given. When they were grouped by topic, each topic gets a heading and
+     * near-duplicates are shown as a one-line reference to their original.
+     */
+    private static void appendPapers(StringBuilder html, List<Paper> papers)
+    {
+        boolean grouped = papers.stream().anyMatch(p -> p.getTopicLabel() != null);
+        Map<String, Paper> byId = papers.stream().collect(Collectors.toMap(Paper::getId, p -> p, (a, b) -> a));
+        Map<Integer, Long> topicSizes = papers.stream()
+                .collect(Collectors.groupingBy(Paper::getTopicId, Collectors.counting()));
+
+        String currentGroup = null;
+        for (Paper paper : papers)
+        {
+            if (grouped)
+            {
+                String group = (paper.getTopicLabel() != null) ? "topic-" + paper.getTopicId() : "other";
+                if (!group.equals(currentGroup))
+                {
+                    if (paper.getTopicLabel() != null)
+                    {
+                        html.append("<h2>🏷️ ").append(paper.getTopicLabel())
+                                .append(" (").append(topicSizes.get(paper.getTopicId())).append(")</h2>");
+                    } else
+                    {
+                        html.append("<h2>📄 Other papers</h2>");
+                    }
+                    currentGroup = group;
+                }
+            }
+
+            Paper original = (paper.getDuplicateOf() != null) ? byId.get(paper.getDuplicateOf()) : null;
+            if (original != null)
+            {
+                html.append("<p>↳ <a href='").append(paper.getUrl()).append("'>").append(paper.getTitle())
+                        .append("</a> — <em>near-duplicate of ").append(original.getTitle()).append("</em></p><hr/>");
+            } else
+            {
+                appendPaper(html, paper);
+            }
+        }
+    }
+
+    private static void appendPaper(StringBuilder html, Paper paper)
+    {
+        html.append("<h3><a href='").append(paper.getUrl()).append("'>")
+                .append(paper.getTitle()).append("</a></h3>");
+        html.append("<p><strong>Authors:</strong> ").append(paper.getAuthors()).append("</p>");
+        html.append("<p><strong>Abstract:</strong> ").append(paper.getAbstractText()).append("</p>");
+
+        appendSummary(html, paper);
+
+        html.append("<hr/>");
+    }
+
+    /**
+     * One list item per update: title, what changed, and the new summary if there is one.
+     */
+    private static void appendUpdate(StringBuilder html, Paper paper)
+    {
+        String version = (paper.getVersion() == null || paper.getVersion().isEmpty()) ? "" : " " + paper.getVersion();
+        html.append("<li><a href='").append(paper.getUrl()).append("'>")
+                .append(paper.getTitle()).append("</a>");
+        switch (paper.getChangeType())
+        {
+            case REVISED:
+                html.append(" — <em>abstract revised").append(version).append("</em>");
+                break;
+            case NEW_VERSION:
+                html.append(" — <em>new version").append(version).append(", abstract unchanged</em>");
+                break;
+            case LATE:
+                html.append(" — <em>listed late</em><br/>").append(paper.getAuthors());
+                break;
+            default:
+                break;
+        }
+        appendSummary(html, paper);
+        html.append("</li>");
+    }
+
+    private static void appendSummary(StringBuilder html, Paper paper)
+    {
+        if (paper.getAiSummary() != null)
+        {
+            html.append("<p><strong>AI Summary")
+                    .append(paper.isSummaryPartial() ? " (partial)" : "")
+                    .append(":</strong> ")
+                    .append(paper.getAiSummary()).append("</p>");
         }
     }
 }
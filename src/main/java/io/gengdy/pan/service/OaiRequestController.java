@@ -0,0 +1,469 @@
+package io.gengdy.pan.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * OaiRequestController
+ * <p>
+ * Request-control layer between {@link ArxivCrawlerService} and the OAI-PMH endpoint. arXiv throttles
+ * harvesters with 503 + Retry-After (some front ends answer 429) and blocks clients that ignore it,
+ * so every request goes through here.
+ * <p>
+ * --- Classification ---
+ * - 200           : success
+ * - 429, 503      : throttled, waits for Retry-After (seconds or HTTP date, else backoff) plus up to 10%
+ *                   jitter and slows pacing down; a Retry-After above max-retry-after fails the request
+ * - 500, 502, 504 : transient, jittered exponential backoff
+ * - I/O errors    : transient (connect failure, reset, timeout), jittered exponential backoff
+ * - other status  : permanent, fails at once
+ * Waits apply to all threads, the server's limit is per client and not per request.
+ * <p>
+ * --- Pacing ---
+ * Request starts are spaced by one shared interval. After a success it decays towards
+ * max(min-interval, latency-factor x EWMA latency), so a slow server is asked less often;
+ * a throttled response doubles it (up to max-interval).
+ * <p>
+ * --- Connection ---
+ * HTTP/1.1 keep-alive (no h2c upgrade round trip on plain http), gzip bodies, explicit connect and
+ * request timeouts.
+ * <p>
+ * --- Statistics ---
+ * Counters and latency percentiles are kept per {@link Window}: a caller passes its own window to
+ * {@link #get(URI, Window)} to get the figures of one crawl, {@link #stats()} covers all requests since
+ * start. Percentiles come from a uniform sample of at most SAMPLE_SIZE latencies, so memory stays
+ * bounded in daemon mode.
+ * <p>
+ * Configurable properties:
+ * - arxiv.user-agent          (default: PAN-arXiv-mailer/1.0 with the project URL)
+ * - arxiv.connect-timeout-ms  (default: 10000)
+ * - arxiv.request-timeout-ms  (default: 60000, one page of ListRecords)
+ * - arxiv.max-retries         (default: 8, per request)
+ * - arxiv.backoff-base-ms     (default: 2000)
+ * - arxiv.backoff-max-ms      (default: 300000)
+ * - arxiv.max-retry-after-ms  (default: 900000, longer Retry-After fails the request)
+ * - arxiv.min-interval-ms     (default: 1000)
+ * - arxiv.max-interval-ms     (default: 60000)
+ * - arxiv.latency-factor      (default: 0.5)
+ */
+@Component
+public class OaiRequestController
+{
+    private static final Logger logger = LoggerFactory.getLogger(OaiRequestController.class);
+
+    private static final double EWMA_ALPHA = 0.2;
+    private static final double INTERVAL_DECAY = 0.8; // per successful request
+    private static final long THROTTLE_STEP_MS = 500;  // smallest interval after a throttled response
+    static final int SAMPLE_SIZE = 1024;               // latencies kept per window for the percentiles
+
+    private final HttpClient http;
+    private final String userAgent;
+    private final long requestTimeoutMs;
+    private final int maxRetries;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final long maxRetryAfterMs;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final double latencyFactor;
+
+    // pacing state, guarded by this
+    private long nextStart;
+    private double intervalMs;
+    private double ewmaLatencyMs = -1;
+
+    // statistics since start
+    private final Window total = new Window();
+
+    public OaiRequestController(@Value("${arxiv.user-agent:PAN-arXiv-mailer/1.0 (+https://github.com/gengdy1545/PAN)}") String userAgent,
+                                @Value("${arxiv.connect-timeout-ms:10000}") long connectTimeoutMs,
+                                @Value("${arxiv.request-timeout-ms:60000}") long requestTimeoutMs,
+                                @Value("${arxiv.max-retries:8}") int maxRetries,
+                                @Value("${arxiv.backoff-base-ms:2000}") long backoffBaseMs,
+                                @Value("${arxiv.backoff-max-ms:300000}") long backoffMaxMs,
+                                @Value("${arxiv.max-retry-after-ms:900000}") long maxRetryAfterMs,
+                                @Value("${arxiv.min-interval-ms:1000}") long minIntervalMs,
+                                @Value("${arxiv.max-interval-ms:60000}") long maxIntervalMs,
+                                @Value("${arxiv.latency-factor:0.5}") double latencyFactor)
+    {
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .proxy(ProxySelector.getDefault())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.userAgent = userAgent;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.maxRetries = maxRetries;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.maxRetryAfterMs = maxRetryAfterMs;
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = Math.max(minIntervalMs, maxIntervalMs);
+        this.latencyFactor = latencyFactor;
+        this.intervalMs = minIntervalMs;
+    }
+
+    /**
+     * GETs the URI and returns the body, retrying throttled and transient failures.
+     */
+    public String get(URI uri) throws IOException, InterruptedException
+    {
+        return get(uri, null);
+    }
+
+    /**
+     * Same as {@link #get(URI)}, also counting the request in the given window (may be null).
+     */
+    public String get(URI uri, Window window) throws IOException, InterruptedException
+    {
+        HttpRequest req = HttpRequest.newBuilder(uri)
+                .header("User-Agent", userAgent)
+                .header("Accept-Encoding", "gzip")
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .GET()
+                .build();
+
+        for (int attempt = 1; ; attempt++)
+        {
+            if (attempt > 1)
+            {
+                tally(window, Window::retry);
+            }
+            awaitSlot();
+
+            long start = System.nanoTime();
+            HttpResponse<byte[]> resp;
+            try
+            {
+                resp = http.send(req, BodyHandlers.ofByteArray());
+            } catch (IOException e)
+            {
+                tally(window, Window::error);
+                if (attempt > maxRetries)
+                {
+                    throw new IOException("Request failed after " + attempt + " attempts. URI=" + uri, e);
+                }
+                long wait = backoff(attempt);
+                logger.warn("OAI request failed (" + e.getClass().getSimpleName() + "), retry " + attempt
+                        + " in " + wait + " ms: " + uri);
+                pause(wait);
+                continue;
+            }
+            long latency = (System.nanoTime() - start) / 1_000_000;
+
+            int status = resp.statusCode();
+            tally(window, w -> w.record(latency));
+            if (status == 200)
+            {
+                onSuccess(latency);
+                return decode(resp);
+            }
+
+            long wait;
+            if (status == 429 || status == 503)
+            {
+                onThrottled();
+                tally(window, Window::throttle);
+                Long retryAfter = retryAfterMillis(resp.headers());
+                if (retryAfter != null && retryAfter > maxRetryAfterMs)
+                {
+                    throw new IOException("HTTP " + status + " with Retry-After " + retryAfter / 1000
+                            + " s, more than arxiv.max-retry-after-ms (" + maxRetryAfterMs + " ms). URI=" + uri);
+                }
+                wait = (retryAfter != null)
+                        ? retryAfter + ThreadLocalRandom.current().nextLong(retryAfter / 10 + 1)
+                        : backoff(attempt);
+            } else if (status == 500 || status == 502 || status == 504)
+            {
+                wait = backoff(attempt);
+            } else
+            {
+                throw new IOException("HTTP " + status + " is not retried. URI=" + uri);
+            }
+
+            if (attempt > maxRetries)
+            {
+                throw new IOException("HTTP " + status + " after " + attempt + " attempts. URI=" + uri);
+            }
+            logger.warn("OAI server answered " + status + ", retry " + attempt + " in " + wait + " ms: " + uri);
+            pause(wait);
+        }
+    }
+
+    // ---------------- Pacing ----------------
+
+    /**
+     * Reserves the next start time and sleeps until it.
+     */
+    private void awaitSlot() throws InterruptedException
+    {
+        long sleep;
+        synchronized (this)
+        {
+            long now = System.currentTimeMillis();
+            long start = Math.max(now, nextStart);
+            nextStart = start + (long) intervalMs;
+            sleep = start - now;
+        }
+        if (sleep > 0)
+        {
+            Thread.sleep(sleep);
+        }
+    }
+
+    /**
+     * No request of any thread starts earlier than now + millis.
+     */
+    private synchronized void pause(long millis)
+    {
+        nextStart = Math.max(nextStart, System.currentTimeMillis() + millis);
+    }
+
+    private synchronized void onSuccess(long latency)
+    {
+        ewmaLatencyMs = (ewmaLatencyMs < 0) ? latency : EWMA_ALPHA * latency + (1 - EWMA_ALPHA) * ewmaLatencyMs;
+        double floor = Math.min(maxIntervalMs, Math.max(minIntervalMs, latencyFactor * ewmaLatencyMs));
+        intervalMs = Math.max(floor, intervalMs * INTERVAL_DECAY);
+    }
+
+    private synchronized void onThrottled()
+    {
+        intervalMs = Math.min(maxIntervalMs, Math.max(intervalMs * 2, THROTTLE_STEP_MS));
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half the delay fixed, half random.
+     */
+    private long backoff(int attempt)
+    {
+        long delay = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempt - 1, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Retry-After as delta seconds or HTTP date, null if absent or unparseable.
+     */
+    static Long retryAfterMillis(HttpHeaders headers)
+    {
+        String value = headers.firstValue("Retry-After").orElse(null);
+        if (value == null || value.isBlank()) return null;
+        value = value.trim();
+        try
+        {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e)
+        {
+            try
+            {
+                ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (RuntimeException ignored)
+            {
+                return null;
+            }
+        }
+    }
+
+    private static String decode(HttpResponse<byte[]> resp) throws IOException
+    {
+        byte[] body = resp.body();
+        if (resp.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false))
+        {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body)))
+            {
+                body = in.readAllBytes();
+            }
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    // ---------------- Statistics ----------------
+
+    private void tally(Window window, Consumer<Window> event)
+    {
+        event.accept(total);
+        if (window != null) event.accept(window);
+    }
+
+    /**
+     * All requests since start.
+     */
+    public Stats stats()
+    {
+        return stats(total);
+    }
+
+    public Stats stats(Window window)
+    {
+        long interval;
+        synchronized (this)
+        {
+            interval = (long) intervalMs;
+        }
+        return window.stats(interval);
+    }
+
+    public void logStats(String label, Window window)
+    {
+        logger.info("OAI requests (" + label + "): " + stats(window));
+    }
+
+    private static long percentile(long[] sorted, int p)
+    {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Counters and a bounded latency sample of a group of requests (reservoir sampling, algorithm R).
+     */
+    public static class Window
+    {
+        private final long[] sample = new long[SAMPLE_SIZE];
+        private int responses;
+        private int throttled;
+        private int retries;
+        private int errors;
+        private long max;
+
+        synchronized void record(long latency)
+        {
+            if (responses < SAMPLE_SIZE)
+            {
+                sample[responses] = latency;
+            } else
+            {
+                int slot = ThreadLocalRandom.current().nextInt(responses + 1);
+                if (slot < SAMPLE_SIZE) sample[slot] = latency;
+            }
+            responses++;
+            max = Math.max(max, latency);
+        }
+
+        synchronized void throttle()
+        {
+            throttled++;
+        }
+
+        synchronized void retry()
+        {
+            retries++;
+        }
+
+        synchronized void error()
+        {
+            errors++;
+        }
+
+        synchronized Stats stats(long intervalMs)
+        {
+            long[] sorted = Arrays.copyOf(sample, Math.min(responses, SAMPLE_SIZE));
+            Arrays.sort(sorted);
+            return new Stats(responses, throttled, retries, errors,
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), max, intervalMs);
+        }
+    }
+
+    public static class Stats
+    {
+        private final int responses;
+        private final int throttled;
+        private final int retries;
+        private final int errors;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+        private final long intervalMs;
+
+        Stats(int responses, int throttled, int retries, int errors,
+              long p50, long p90, long p99, long max, long intervalMs)
+        {
+            this.responses = responses;
+            this.throttled = throttled;
+            this.retries = retries;
+            this.errors = errors;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+            this.intervalMs = intervalMs;
+        }
+
+        public int getResponses()
+        {
+            return responses;
+        }
+
+        public int getThrottled()
+        {
+            return throttled;
+        }
+
+        public int getRetries()
+        {
+            return retries;
+        }
+
+        public int getErrors()
+        {
+            return errors;
+        }
+
+        public long getP50()
+        {
+            return p50;
+        }
+
+        public long getP90()
+        {
+            return p90;
+        }
+
+        public long getP99()
+        {
+            return p99;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+
+        public long getIntervalMs()
+        {
+            return intervalMs;
+        }
+
+        @Override
+        public String toString()
+        {
+            return responses + " responses, latency p50=" + p50 + " ms p90=" + p90 + " ms p99=" + p99
+                    + " ms max=" + max + " ms, " + throttled + " throttled, " + retries + " retries, "
+                    + errors + " I/O errors, pacing " + intervalMs + " ms";
+        }
+    }
+}
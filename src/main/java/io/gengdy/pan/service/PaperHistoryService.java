@@ -0,0 +1,304 @@
+package io.gengdy.pan.service;
+
+import io.gengdy.pan.model.ChangeType;
+import io.gengdy.pan.model.Paper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * PaperHistoryService
+ * <p>
+ * Remembers what earlier digests contained so that each run only mails deltas.
+ * For every mailed (id, version) a content hash of the abstract is stored; on the next run each
+ * crawled paper is classified as NEW, LATE, REVISED, NEW_VERSION or UNCHANGED (see {@link ChangeType}).
+ * UNCHANGED papers are dropped and only papers whose abstract is new or changed are summarized again.
+ * <p>
+ * --- Storage ---
+ * Append-only TSV, one line per mailed (id, version): id, version, hash, mail date.
+ * It is compacted on load (last line per (id, version), entries older than the retention dropped).
+ * <p>
+ * Configurable properties:
+ * - pan.history.enabled         (default: true)
+ * - pan.history.file            (default: ${pan.home}/data/paper-history.tsv)
+ * - pan.history.late-after-days (default: 5, unseen v1 papers submitted earlier than this are LATE)
+ * - pan.history.retention-days  (default: 365)
+ */
+@Service
+public class PaperHistoryService
+{
+    private static final Logger logger = LoggerFactory.getLogger(PaperHistoryService.class);
+
+    private static final ZoneId ET = ZoneId.of("America/New_York");
+
+    private final boolean enabled;
+    private final Path historyFile;
+    private final int lateAfterDays;
+    private final int retentionDays;
+
+    /**
+     * Latest mailed version per paper id, loaded lazily.
+     */
+    private Map<String, Entry> latest;
+
+    public PaperHistoryService(@Value("${pan.history.enabled:true}") boolean enabled,
+                               @Value("${pan.history.file:${pan.home}/data/paper-history.tsv}") String historyFile,
+                               @Value("${pan.history.late-after-days:5}") int lateAfterDays,
+                               @Value("${pan.history.retention-days:365}") int retentionDays)
+    {
+        this.enabled = enabled;
+        this.historyFile = Paths.get(historyFile);
+        this.lateAfterDays = lateAfterDays;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Classifies the papers and returns those worth mailing (everything but UNCHANGED).
+     */
+    public synchronized List<Paper> filterChanged(List<Paper> papers) throws IOException
+    {
+        if (!enabled) return papers;
+        load();
+
+        Map<ChangeType, Integer> counts = new EnumMap<>(ChangeType.class);
+        List<Paper> changed = new ArrayList<>();
+        for (Paper paper : papers)
+        {
+            ChangeType type = classify(paper, latest.get(paper.getId()));
+            paper.setChangeType(type);
+            counts.merge(type, 1, Integer::sum);
+            if (type != ChangeType.UNCHANGED)
+            {
+                changed.add(paper);
+            }
+        }
+        logger.info("Change detection: " + counts);
+        return changed;
+    }
+
+    /**
+     * Papers that need a (new) summary: the abstract was never summarized in this form.
+     */
+    public List<Paper> needingSummary(List<Paper> papers)
+    {
+        return papers.stream().filter(PaperHistoryService::needsSummary).collect(Collectors.toList());
+    }
+
+    public static boolean needsSummary(Paper paper)
+    {
+        return paper.getChangeType() != ChangeType.NEW_VERSION && paper.getChangeType() != ChangeType.UNCHANGED;
+    }
+
+    /**
+     * Writes the current history to file, for processes that cannot read the history file
+     * itself (workers on other nodes classify against this copy). Writes nothing when disabled.
+     */
+    public synchronized void exportTo(Path file) throws IOException
+    {
+        if (!enabled) return;
+        load();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            for (Entry e : latest.values())
+            {
+                w.write(e.toLine());
+                w.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Classifier over a file written by {@link #exportTo(Path)}, with this instance's settings.
+     * Without an export every paper counts as never mailed. Do not record into it.
+     */
+    public PaperHistoryService readExport(Path file)
+    {
+        return new PaperHistoryService(Files.exists(file), file.toString(), lateAfterDays, retentionDays);
+    }
+
+    /**
+     * Records the papers as mailed. Call only after the digest went out.
+     */
+    public synchronized void record(List<Paper> papers) throws IOException
+    {
+        if (!enabled || papers.isEmpty()) return;
+        load();
+
+        String today = LocalDate.now(ET).toString();
+        Files.createDirectories(historyFile.toAbsolutePath().getParent());
+        try (BufferedWriter w = Files.newBufferedWriter(historyFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+        {
+            for (Paper paper : papers)
+            {
+                Entry e = new Entry(paper.getId(), safe(paper.getVersion()), contentHash(paper.getAbstractText()), today);
+                w.write(e.toLine());
+                w.newLine();
+                latest.put(e.id, e);
+            }
+        }
+    }
+
+    // ---------------- Classification ----------------
+
+    ChangeType classify(Paper paper, Entry known)
+    {
+        if (known == null)
+        {
+            return isLate(paper) ? ChangeType.LATE : ChangeType.NEW;
+        }
+        String version = safe(paper.getVersion());
+        if (versionNumber(version) < versionNumber(known.version))
+        {
+            return ChangeType.UNCHANGED; // stale listing of an older version
+        }
+        if (!known.hash.equals(contentHash(paper.getAbstractText())))
+        {
+            return ChangeType.REVISED;
+        }
+        return version.equals(known.version) ? ChangeType.UNCHANGED : ChangeType.NEW_VERSION;
+    }
+
+    /**
+     * Only a first version can arrive late: the created date is the date of v1, so an unseen v2 of an
+     * old paper is an ordinary replacement of a paper that was never mailed and counts as NEW.
+     */
+    private boolean isLate(Paper paper)
+    {
+        if (paper.getCreatedDate() == null || versionNumber(safe(paper.getVersion())) > 1) return false;
+        LocalDate listed = (paper.getUpdatedDate() != null) ? paper.getUpdatedDate() : LocalDate.now(ET);
+        return paper.getCreatedDate().isBefore(listed.minusDays(lateAfterDays));
+    }
+
+    /**
+     * SHA-256 of the whitespace-normalized abstract, so reflowed text does not count as a change.
+     */
+    static String contentHash(String abstractText)
+    {
+        String normalized = (abstractText == null) ? "" : abstractText.trim().replaceAll("\\s+", " ");
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++)
+            {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static int versionNumber(String version)
+    {
+        try
+        {
+            return (version.length() < 2) ? 0 : Integer.parseInt(version.substring(1));
+        } catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    // ---------------- Storage ----------------
+
+    private void load() throws IOException
+    {
+        if (latest != null) return;
+        latest = new HashMap<>();
+        if (!Files.exists(historyFile)) return;
+
+        LocalDate cutoff = LocalDate.now(ET).minusDays(retentionDays);
+        Map<String, Entry> perVersion = new LinkedHashMap<>();
+        int lines = 0;
+        for (String line : Files.readAllLines(historyFile, StandardCharsets.UTF_8))
+        {
+            Entry e = Entry.parse(line);
+            if (e == null) continue;
+            lines++;
+            if (LocalDate.parse(e.date).isBefore(cutoff)) continue;
+            perVersion.put(e.id + "\t" + e.version, e);
+        }
+        for (Entry e : perVersion.values())
+        {
+            latest.merge(e.id, e, (a, b) -> versionNumber(b.version) >= versionNumber(a.version) ? b : a);
+        }
+
+        if (lines > perVersion.size())
+        {
+            compact(perVersion.values());
+        }
+        logger.info("Loaded paper history: " + perVersion.size() + " versions of " + latest.size() + " papers.");
+    }
+
+    private void compact(Collection<Entry> entries) throws IOException
+    {
+        Path tmp = historyFile.resolveSibling(historyFile.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            for (Entry e : entries)
+            {
+                w.write(e.toLine());
+                w.newLine();
+            }
+        }
+        Files.move(tmp, historyFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String safe(String s)
+    {
+        return (s == null) ? "" : s;
+    }
+
+    static class Entry
+    {
+        final String id;
+        final String version;
+        final String hash;
+        final String date;
+
+        Entry(String id, String version, String hash, String date)
+        {
+            this.id = id;
+            this.version = version;
+            this.hash = hash;
+            this.date = date;
+        }
+
+        String toLine()
+        {
+            return id + "\t" + version + "\t" + hash + "\t" + date;
+        }
+
+        static Entry parse(String line)
+        {
+            String[] p = line.split("\t", -1);
+            if (p.length != 4) return null;
+            try
+            {
+                LocalDate.parse(p[3]);
+            } catch (RuntimeException e)
+            {
+                return null;
+            }
+            return new Entry(p[0], p[1], p[2], p[3]);
+        }
+    }
+}
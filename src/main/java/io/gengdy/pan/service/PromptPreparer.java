@@ -0,0 +1,194 @@
+package io.gengdy.pan.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PromptPreparer
+ * <p>
+ * Turns a raw arXiv abstract into compact model input:
+ * 1. strips LaTeX and markup ($...$, \cmd{arg}, HTML tags) down to readable text
+ * 2. collapses whitespace and drops boilerplate sentences (code links, venue notes, page counts)
+ * 3. trims the result to a token budget, cutting at sentence boundaries where possible
+ * <p>
+ * Token counts are a local estimate (~4 characters per token for Latin text, one token per
+ * CJK character), close enough to Gemini's tokenizer for budgeting without a network call.
+ * <p>
+ * Configurable properties:
+ * - gemini.max-input-tokens (default: 400, budget for the abstract only; 0 disables trimming)
+ */
+@Component
+public class PromptPreparer
+{
+    private static final Pattern LATEX_ARG_COMMAND = Pattern.compile("\\\\([a-zA-Z]+)\\*?\\s*\\{([^{}]*)}");
+    private static final Pattern LATEX_COMMAND = Pattern.compile("\\\\([a-zA-Z]+)");
+    private static final Pattern LATEX_ESCAPE = Pattern.compile("\\\\([%&#_$])");
+    private static final Pattern HTML_TAG = Pattern.compile("</?[a-zA-Z][a-zA-Z0-9]*(?:\\s[^<>]{0,200})?/?>"); // not "k < n", "m<n$"
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?。！？])\\s+");
+
+    /**
+     * Commands whose argument is plain text; any other \cmd{arg} is kept as cmd(arg).
+     */
+    private static final Set<String> TEXT_COMMANDS = Set.of(
+            "textbf", "textit", "texttt", "textrm", "textsc", "textsf", "emph", "underline", "text",
+            "mathrm", "mathbf", "mathit", "mathcal", "mathbb", "mathsf", "mathtt", "operatorname",
+            "url", "href", "cite", "citep", "citet", "ref", "footnote");
+
+    /**
+     * Whole-sentence boilerplate forms. Each pattern is anchored to the shape the note takes in
+     * arXiv abstracts, so content sentences that merely mention a URL, "accepted by" or a page count
+     * are kept.
+     */
+    private static final List<Pattern> BOILERPLATE = List.of(
+            // "Accepted at VLDB 2026", "This paper has been accepted to ICML", "To appear in SIGMOD"
+            Pattern.compile("(?i)^(?:(?:this|our) (?:paper|work|article|manuscript) (?:has been |was |is |will be )?)?"
+                    + "(?:accepted (?:at|to|in|for|as)|to appear (?:at|in)|published (?:at|in)|presented at)\\b.*"),
+            // "12 pages, 4 figures", "12 pages, 4 figures, accepted at ICDE"
+            Pattern.compile("(?i)^\\d+\\s+pages?\\b[^.]{0,120}\\.?$"),
+            // "Code is available at https://...", "Our code and data are publicly released on github.com/..."
+            Pattern.compile("(?i)^(?:our |the |all )?(?:source )?(?:code|data|datasets?|implementations?|models?|software|artifacts?)\\b"
+                    + "[^.]{0,60}\\b(?:available|released|open[- ]sourced)\\b[^.]{0,30}\\b(?:at|on|from|in|via)\\s*:?\\s*"
+                    + "(?:https?://|www\\.|github\\.com)\\S*$"),
+            // "Code: https://...", a sentence that is only a link
+            Pattern.compile("(?i)^(?:(?:code|data|project page|website)\\s*:\\s*)?(?:https?://|www\\.|github\\.com/)\\S*$"),
+            // "This version corrects ...", "This is the camera-ready version of ..."
+            Pattern.compile("(?i)^(?:this version\\b|this is the (?:camera[- ]ready|extended|full) version\\b).*"));
+
+    private final int maxInputTokens;
+
+    public PromptPreparer(@Value("${gemini.max-input-tokens:400}") int maxInputTokens)
+    {
+        this.maxInputTokens = maxInputTokens;
+    }
+
+    /**
+     * Full model input for one abstract: prompt, separator, cleaned and trimmed abstract.
+     */
+    public String buildInput(String prompt, String abstractText)
+    {
+        return prompt.trim() + "\n\nAbstract:\n" + trimToBudget(normalize(abstractText), maxInputTokens);
+    }
+
+    /**
+     * Strips LaTeX and markup, drops boilerplate sentences and collapses whitespace.
+     */
+    public static String normalize(String text)
+    {
+        if (text == null || text.isBlank()) return "";
+
+        String s = HTML_TAG.matcher(text).replaceAll(" ");
+        s = s.replace("\\\\", " ").replace("~", " ");
+        s = LATEX_ESCAPE.matcher(s).replaceAll("$1");
+
+        // \textbf{x} -> x, \sqrt{n} -> sqrt(n), repeated for nested arguments
+        String prev;
+        do
+        {
+            prev = s;
+            s = LATEX_ARG_COMMAND.matcher(s).replaceAll(m -> Matcher.quoteReplacement(
+                    TEXT_COMMANDS.contains(m.group(1)) ? m.group(2) : m.group(1) + "(" + m.group(2) + ")"));
+        } while (!s.equals(prev));
+
+        // \epsilon -> epsilon, \log -> log
+        s = LATEX_COMMAND.matcher(s).replaceAll("$1");
+        s = s.replace("$", "").replace("{", "").replace("}", "");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+
+        StringBuilder out = new StringBuilder(s.length());
+        for (String sentence : SENTENCE_END.split(s))
+        {
+            if (sentence.isBlank() || isBoilerplate(sentence)) continue;
+            if (out.length() > 0) out.append(' ');
+            out.append(sentence);
+        }
+        return out.toString();
+    }
+
+    private static boolean isBoilerplate(String sentence)
+    {
+        for (Pattern p : BOILERPLATE)
+        {
+            if (p.matcher(sentence).matches()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps whole sentences while they fit into the budget; if even the first one does not fit,
+     * keeps as many words of it as fit.
+     */
+    public static String trimToBudget(String text, int maxTokens)
+    {
+        if (maxTokens <= 0 || estimateTokens(text) <= maxTokens) return text;
+
+        List<String> kept = new ArrayList<>();
+        int used = 0;
+        for (String sentence : SENTENCE_END.split(text))
+        {
+            int cost = estimateTokens(sentence);
+            if (used + cost > maxTokens) break;
+            kept.add(sentence);
+            used += cost;
+        }
+        if (!kept.isEmpty()) return String.join(" ", kept);
+
+        StringBuilder sb = new StringBuilder();
+        used = 0;
+        for (String word : WHITESPACE.split(text))
+        {
+            int cost = estimateTokens(word);
+            if (used + cost > maxTokens) break;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(word);
+            used += cost;
+        }
+        if (sb.length() == 0)
+        {
+            sb.append(text, 0, Math.min(text.length(), maxTokens * 4));
+        }
+        return sb.append(" ...").toString();
+    }
+
+    /**
+     * Cheap local token estimate: ceil(len/4) per Latin word plus one per punctuation mark,
+     * one per CJK character.
+     */
+    public static int estimateTokens(String text)
+    {
+        if (text == null || text.isEmpty()) return 0;
+        int tokens = 0;
+        int wordLen = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) && !isCjk(c))
+            {
+                wordLen++;
+                continue;
+            }
+            tokens += (wordLen + 3) / 4;
+            wordLen = 0;
+            if (isCjk(c) || (!Character.isWhitespace(c) && !Character.isLetterOrDigit(c)))
+            {
+                tokens++;
+            }
+        }
+        return tokens + (wordLen + 3) / 4;
+    }
+
+    private static boolean isCjk(char c)
+    {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
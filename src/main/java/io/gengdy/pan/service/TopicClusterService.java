@@ -0,0 +1,896 @@
+package io.gengdy.pan.service;
+
+import io.gengdy.pan.model.ChangeType;
+import io.gengdy.pan.model.Paper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * TopicClusterService
+ * <p>
+ * Groups the day's papers by topic so that related papers sit together in the digest, and marks
+ * near-duplicates (the same work listed twice, a paper and its companion report).
+ * <p>
+ * --- Vectors ---
+ * Title (counted twice) and abstract are tokenized into unigrams and bigrams, hashed with a sign bit
+ * into DIM buckets and weighted by log TF x IDF of the day's batch. Vectors are sorted int/float
+ * arrays normalized to unit length, so a dot product is the cosine similarity.
+ * <p>
+ * --- Clustering ---
+ * Online k-means whose centroids carry over from earlier days:
+ * 1. every paper is assigned to the most similar known centroid (parallel)
+ * 2. papers below pan.cluster.similarity start new clusters, leader-follower style (sequential);
+ *    once max-clusters new clusters exist, papers that fit none of them stay unclustered
+ * 3. centroids move towards their members, new clusters that turn out to be fragments of one topic
+ *    (centroid cosine above MERGE_SIMILARITY) are merged, and every paper is reassigned once (parallel)
+ * 4. stored centroids are blended with the final members; their weight is capped so topics can drift
+ * A paper is never kept in a cluster it is less similar to than pan.cluster.similarity, such papers
+ * are listed last without a topic. Papers of one cluster that are more similar than
+ * pan.cluster.duplicate-similarity are near-duplicates.
+ * <p>
+ * --- Storage ---
+ * TSV, one line per centroid: id, weight, last seen, label, largest entries as bucket:value.
+ * Written by commit() after the digest was sent. Clusters of a single paper are not stored; above
+ * pan.cluster.max-clusters the least recently seen centroids are evicted. Centroids not seen for
+ * MAX_IDLE_DAYS are dropped.
+ * <p>
+ * Configurable properties:
+ * - pan.cluster.enabled              (default: true)
+ * - pan.cluster.file                 (default: ${pan.home}/data/topic-centroids.tsv)
+ * - pan.cluster.similarity           (default: 0.2, minimum cosine to join a cluster)
+ * - pan.cluster.duplicate-similarity (default: 0.8)
+ * - pan.cluster.max-clusters         (default: 64, stored centroids and new clusters per day)
+ * - pan.cluster.min-papers           (default: 8, smaller digests stay a flat list)
+ */
+@Service
+public class TopicClusterService
+{
+    private static final Logger logger = LoggerFactory.getLogger(TopicClusterService.class);
+
+    private static final ZoneId ET = ZoneId.of("America/New_York");
+
+    static final int DIM = 1 << 15;
+    private static final int MAX_WEIGHT = 200;     // how many papers a stored centroid counts for at most
+    private static final int STORED_ENTRIES = 256; // non-zero entries kept per centroid on disk
+    private static final int MAX_IDLE_DAYS = 90;
+    private static final int LABEL_TERMS = 3;
+    private static final double MERGE_SIMILARITY = 0.4;
+    private static final int MAX_POSTINGS = 500;   // features this common say nothing about duplicates
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "the", "and", "for", "with", "that", "this", "these", "those", "are", "was", "were", "been", "being",
+            "from", "into", "onto", "over", "under", "between", "through", "such", "than", "then", "their",
+            "there", "which", "while", "where", "when", "what", "who", "how", "its", "our", "can", "may", "also",
+            "not", "but", "has", "have", "had", "more", "most", "both", "each", "other", "some", "any", "all",
+            "via", "using", "use", "based", "paper", "propose", "proposed", "present", "show", "shows", "study",
+            "approach", "method", "methods", "results", "new", "novel", "work", "well", "towards", "toward");
+
+    private final boolean enabled;
+    private final Path centroidFile;
+    private final double similarity;
+    private final double duplicateSimilarity;
+    private final int maxClusters;
+    private final int minPapers;
+
+    /**
+     * Centroids from earlier days, loaded lazily.
+     */
+    private List<Centroid> centroids;
+    private int nextId;
+
+    /**
+     * Centroids of the last clustered batch, saved by commit().
+     */
+    private List<Centroid> pending;
+    private int pendingNextId;
+
+    public TopicClusterService(@Value("${pan.cluster.enabled:true}") boolean enabled,
+                               @Value("${pan.cluster.file:${pan.home}/data/topic-centroids.tsv}") String centroidFile,
+                               @Value("${pan.cluster.similarity:0.2}") double similarity,
+                               @Value("${pan.cluster.duplicate-similarity:0.8}") double duplicateSimilarity,
+                               @Value("${pan.cluster.max-clusters:64}") int maxClusters,
+                               @Value("${pan.cluster.min-papers:8}") int minPapers)
+    {
+        this.enabled = enabled;
+        this.centroidFile = Paths.get(centroidFile);
+        this.similarity = similarity;
+        this.duplicateSimilarity = duplicateSimilarity;
+        this.maxClusters = Math.max(1, maxClusters);
+        this.minPapers = minPapers;
+    }
+
+    /**
+     * Assigns topics and near-duplicates to the fresh papers and returns them ordered by cluster:
+     * larger clusters first, each near-duplicate right after its original, papers without related
+     * papers last. Revised, late and re-versioned papers are listed in the updates section of the
+     * digest, they are not clustered and follow the fresh papers unchanged.
+     * The updated centroids are kept aside until {@link #commit()}.
+     * On any error the papers are returned unchanged, the digest does not depend on clustering.
+     */
+    public synchronized List<Paper> cluster(List<Paper> papers)
+    {
+        pending = null;
+        List<Paper> fresh = papers.stream().filter(TopicClusterService::isFresh).collect(Collectors.toList());
+        if (!enabled || fresh.size() < minPapers) return papers;
+        long start = System.nanoTime();
+        try
+        {
+            load();
+            LocalDate today = LocalDate.now(ET);
+            Doc[] docs = vectorize(fresh);
+
+            // 1. nearest known centroid
+            List<Centroid> all = new ArrayList<>(centroids);
+            int[] assign = new int[docs.length];
+            double[] sims = new double[docs.length];
+            nearest(docs, all, assign, sims);
+
+            // 2. leader-follower for papers that fit no known topic
+            int known = all.size();
+            int id = nextId;
+            for (int i = 0; i < docs.length; i++)
+            {
+                if (assign[i] >= 0 && sims[i] >= similarity) continue;
+                assign[i] = -1;
+                int best = -1;
+                double bestSim = -1;
+                for (int k = known; k < all.size(); k++)
+                {
+                    double s = all.get(k).similarity(docs[i]);
+                    if (s > bestSim)
+                    {
+                        best = k;
+                        bestSim = s;
+                    }
+                }
+                if (best >= 0 && bestSim >= similarity)
+                {
+                    all.get(best).add(docs[i]);
+                    assign[i] = best;
+                } else if (all.size() - known < maxClusters)
+                {
+                    Centroid c = new Centroid(id++, new float[DIM], 0, 0, today, null);
+                    c.add(docs[i]);
+                    all.add(c);
+                    assign[i] = all.size() - 1;
+                }
+            }
+
+            // 3. one k-means step: move centroids, merge fragments of one topic, reassign
+            List<Centroid> moved = blend(all, assign, docs, today);
+            mergeFragments(moved, known, assign);
+            reassign(docs, moved, assign);
+
+            // 4. blend the stored centroids with the final members
+            List<Centroid> updated = blend(all, assign, docs, today);
+            int[][] members = members(assign, updated.size());
+
+            int[] duplicateOf = nearDuplicates(docs, assign);
+            List<Paper> ordered = order(fresh, docs, updated, members, assign, duplicateOf);
+            for (Paper p : papers)
+            {
+                if (!isFresh(p)) ordered.add(p);
+            }
+
+            // a paper on its own is no topic yet, it would only attract unrelated papers later
+            List<Centroid> kept = new ArrayList<>();
+            for (int k = 0; k < updated.size(); k++)
+            {
+                Centroid c = updated.get(k);
+                if (c.weight > 0 && (k < known || members[k].length > 1)) kept.add(c);
+            }
+            pending = evict(kept);
+            pendingNextId = id;
+
+            long groups = Arrays.stream(members).filter(m -> m.length > 1).count();
+            long unclustered = Arrays.stream(assign).filter(a -> a < 0).count();
+            int firstNewId = nextId;
+            long created = pending.stream().filter(c -> c.id >= firstNewId).count();
+            logger.info("Clustered " + fresh.size() + " papers into " + groups + " topics (" + created
+                    + " new clusters, " + pending.size() + " known, " + unclustered + " unclustered) in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            return ordered;
+        } catch (IOException | RuntimeException e)
+        {
+            logger.warn("Topic clustering skipped: " + e.getMessage());
+            return papers;
+        }
+    }
+
+    /**
+     * Stores the centroids of the last {@link #cluster} call. Called once the digest went out, so a
+     * digest that failed and is sent again by the next run does not count its papers twice.
+     */
+    public synchronized void commit()
+    {
+        if (pending == null) return;
+        centroids = pending;
+        nextId = pendingNextId;
+        pending = null;
+        try
+        {
+            save();
+        } catch (IOException e)
+        {
+            logger.warn("Topic centroids not saved: " + e.getMessage());
+        }
+    }
+
+    private static boolean isFresh(Paper paper)
+    {
+        return paper.getChangeType() == null || paper.getChangeType() == ChangeType.NEW;
+    }
+
+    /**
+     * Keeps at most maxClusters centroids: the least recently seen go first, the lightest among
+     * those seen on the same day.
+     */
+    private List<Centroid> evict(List<Centroid> cs)
+    {
+        if (cs.size() <= maxClusters) return cs;
+        List<Centroid> kept = cs.stream()
+                .sorted(Comparator.<Centroid, LocalDate>comparing(c -> c.lastSeen).reversed()
+                        .thenComparing(Comparator.<Centroid>comparingDouble(c -> c.weight).reversed()))
+                .limit(maxClusters)
+                .sorted(Comparator.comparingInt(c -> c.id))
+                .collect(Collectors.toList());
+        logger.info("Evicted " + (cs.size() - kept.size()) + " topic centroids above pan.cluster.max-clusters.");
+        return kept;
+    }
+
+    // ---------------- Vectors ----------------
+
+    /**
+     * Sparse unit-length TF-IDF vector of one paper.
+     */
+    static final class Doc
+    {
+        final int[] idx;
+        final float[] val;
+        final List<String> titleTerms;
+
+        Doc(int[] idx, float[] val, List<String> titleTerms)
+        {
+            this.idx = idx;
+            this.val = val;
+            this.titleTerms = titleTerms;
+        }
+    }
+
+    private static Doc[] vectorize(List<Paper> papers)
+    {
+        Doc[] docs = IntStream.range(0, papers.size()).parallel()
+                .mapToObj(i -> termFrequencies(papers.get(i)))
+                .toArray(Doc[]::new);
+
+        int[] df = new int[DIM];
+        for (Doc d : docs)
+        {
+            for (int b : d.idx) df[b]++;
+        }
+        float[] idf = new float[DIM];
+        double n = docs.length;
+        for (int b = 0; b < DIM; b++)
+        {
+            if (df[b] > 0) idf[b] = (float) (Math.log((n + 1) / (df[b] + 1)) + 1);
+        }
+
+        Arrays.stream(docs).parallel().forEach(d -> {
+            double norm = 0;
+            for (int t = 0; t < d.idx.length; t++)
+            {
+                d.val[t] *= idf[d.idx[t]];
+                norm += d.val[t] * d.val[t];
+            }
+            float inv = (norm > 0) ? (float) (1 / Math.sqrt(norm)) : 0;
+            for (int t = 0; t < d.val.length; t++) d.val[t] *= inv;
+        });
+        return docs;
+    }
+
+    /**
+     * Hashed log term frequencies; each feature is encoded as bucket * 2 + sign bit, sorted and merged.
+     */
+    private static Doc termFrequencies(Paper paper)
+    {
+        List<String> title = tokenize(paper.getTitle());
+        List<String> body = tokenize(paper.getAbstractText());
+
+        int[] codes = new int[2 * featureCount(title) + featureCount(body)];
+        int n = encode(title, codes, 0);
+        n = encode(title, codes, n);
+        encode(body, codes, n);
+        Arrays.sort(codes);
+
+        int[] idx = new int[codes.length];
+        float[] val = new float[codes.length];
+        int size = 0;
+        for (int i = 0; i < codes.length; )
+        {
+            int bucket = codes[i] >>> 1;
+            int count = 0;
+            for (; i < codes.length && (codes[i] >>> 1) == bucket; i++)
+            {
+                count += ((codes[i] & 1) == 0) ? 1 : -1;
+            }
+            if (count != 0)
+            {
+                idx[size] = bucket;
+                val[size] = (float) (Math.signum(count) * (1 + Math.log(Math.abs(count))));
+                size++;
+            }
+        }
+        return new Doc(Arrays.copyOf(idx, size), Arrays.copyOf(val, size), features(title));
+    }
+
+    private static int featureCount(List<String> tokens)
+    {
+        return tokens.isEmpty() ? 0 : 2 * tokens.size() - 1;
+    }
+
+    private static int encode(List<String> tokens, int[] codes, int pos)
+    {
+        int previous = 0;
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            int h = tokens.get(i).hashCode();
+            codes[pos++] = code(h);
+            if (i > 0) codes[pos++] = code(previous * 0x9e3779b9 + h); // bigram, without building the string
+            previous = h;
+        }
+        return pos;
+    }
+
+    private static int code(int hash)
+    {
+        int h = mix(hash);
+        return ((h & (DIM - 1)) << 1) | (h >>> 31);
+    }
+
+    /**
+     * MurmurHash3 finalizer, spreads String.hashCode over all bits.
+     */
+    private static int mix(int h)
+    {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Lower-case words of at least three letters, without stopwords, numbers and LaTeX command names.
+     * A hand-written scanner, the regex based cleanup of the prompt path is too slow for this stage.
+     */
+    static List<String> tokenize(String text)
+    {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        int n = text.length();
+        for (int i = 0; i < n; )
+        {
+            if (!Character.isLetterOrDigit(text.charAt(i)))
+            {
+                i++;
+                continue;
+            }
+            int begin = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i - begin < 3 || (begin > 0 && text.charAt(begin - 1) == '\\') || Character.isDigit(text.charAt(begin)))
+            {
+                continue;
+            }
+            String t = text.substring(begin, i).toLowerCase(Locale.ROOT);
+            if (STOPWORDS.contains(t)) continue;
+            if (t.length() > 4 && t.endsWith("s") && !t.endsWith("ss")) t = t.substring(0, t.length() - 1);
+            tokens.add(t);
+        }
+        return tokens;
+    }
+
+    private static List<String> features(List<String> tokens)
+    {
+        Set<String> features = new LinkedHashSet<>(tokens);
+        for (int i = 1; i < tokens.size(); i++)
+        {
+            features.add(tokens.get(i - 1) + " " + tokens.get(i));
+        }
+        return new ArrayList<>(features);
+    }
+
+    // ---------------- Clustering ----------------
+
+    /**
+     * Dense centroid; vector / norm is the unit direction, weight the number of papers it stands for.
+     */
+    static final class Centroid
+    {
+        final int id;
+        final float[] vector;
+        double norm;
+        double weight;
+        final LocalDate lastSeen;
+        String label;
+
+        Centroid(int id, float[] vector, double norm, double weight, LocalDate lastSeen, String label)
+        {
+            this.id = id;
+            this.vector = vector;
+            this.norm = norm;
+            this.weight = weight;
+            this.lastSeen = lastSeen;
+            this.label = label;
+        }
+
+        double similarity(Doc d)
+        {
+            return (norm == 0) ? 0 : dot(d) / norm;
+        }
+
+        /**
+         * Similarity to this centroid without the paper's own contribution (it is one of the members).
+         */
+        double similarityWithout(Doc d)
+        {
+            double dot = dot(d);
+            double rest = norm * norm - 2 * dot + 1;
+            return (rest > 1e-9) ? (dot - 1) / Math.sqrt(rest) : 0;
+        }
+
+        private double dot(Doc d)
+        {
+            double s = 0;
+            for (int t = 0; t < d.idx.length; t++) s += d.val[t] * vector[d.idx[t]];
+            return s;
+        }
+
+        /**
+         * Adds a unit vector to the running sum; |s + x|^2 = |s|^2 + 2 s.x + 1.
+         */
+        void add(Doc d)
+        {
+            double dot = 0;
+            for (int t = 0; t < d.idx.length; t++)
+            {
+                dot += d.val[t] * vector[d.idx[t]];
+                vector[d.idx[t]] += d.val[t];
+            }
+            norm = Math.sqrt(norm * norm + 2 * dot + 1);
+        }
+    }
+
+    private static void nearest(Doc[] docs, List<Centroid> cs, int[] assign, double[] sims)
+    {
+        IntStream.range(0, docs.length).parallel().forEach(i -> {
+            int best = -1;
+            double bestSim = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < cs.size(); k++)
+            {
+                double s = cs.get(k).similarity(docs[i]);
+                if (s > bestSim)
+                {
+                    best = k;
+                    bestSim = s;
+                }
+            }
+            assign[i] = best;
+            sims[i] = bestSim;
+        });
+    }
+
+    /**
+     * One k-means assignment step. A paper's own cluster is scored without the paper itself, so a
+     * paper that started a cluster of its own can join a topic that grew later. Papers only move to
+     * a cluster above the similarity threshold; a paper that fits no cluster, its own included, is
+     * left unclustered (-1).
+     */
+    private void reassign(Doc[] docs, List<Centroid> cs, int[] assign)
+    {
+        IntStream.range(0, docs.length).parallel().forEach(i -> {
+            int best = -1;
+            double bestSim = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < cs.size(); k++)
+            {
+                Centroid c = cs.get(k);
+                if (c == null) continue;
+                double s = (k == assign[i]) ? c.similarityWithout(docs[i]) : c.similarity(docs[i]);
+                if (s > bestSim)
+                {
+                    best = k;
+                    bestSim = s;
+                }
+            }
+            assign[i] = (best >= 0 && bestSim >= similarity) ? best : -1;
+        });
+    }
+
+    /**
+     * New centroids: each stored centroid (weight capped) plus the papers now assigned to it.
+     */
+    private static List<Centroid> blend(List<Centroid> base, int[] assign, Doc[] docs, LocalDate today)
+    {
+        int[][] members = members(assign, base.size());
+        return IntStream.range(0, base.size()).parallel().mapToObj(k -> {
+            Centroid old = base.get(k);
+            if (members[k].length == 0) return old;
+
+            float[] v = new float[DIM];
+            double w = Math.min(old.weight, MAX_WEIGHT);
+            if (w > 0 && old.norm > 0)
+            {
+                float f = (float) (w / old.norm);
+                for (int b = 0; b < DIM; b++) v[b] = old.vector[b] * f;
+            }
+            for (int i : members[k])
+            {
+                Doc d = docs[i];
+                for (int t = 0; t < d.idx.length; t++) v[d.idx[t]] += d.val[t];
+            }
+            double norm = 0;
+            for (float x : v) norm += x * x;
+            return new Centroid(old.id, v, Math.sqrt(norm), w + members[k].length, today, old.label);
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * A paper that fits no cluster yet is compared with single papers in step 2, so one topic can
+     * start as several small clusters. Merges clusters with at least one new one (index >= known) and
+     * members in this batch while the most similar pair is above MERGE_SIMILARITY; merged entries
+     * become null.
+     */
+    private static void mergeFragments(List<Centroid> cs, int known, int[] assign)
+    {
+        int k = cs.size();
+        int[] sizes = new int[k];
+        for (int a : assign)
+        {
+            if (a >= 0) sizes[a]++;
+        }
+        double[][] sim = new double[k][k];
+        IntStream.range(known, k).parallel().forEach(b -> {
+            for (int a = 0; a < b; a++)
+            {
+                if (sizes[a] > 0 && sizes[b] > 0) sim[a][b] = cosine(cs.get(a), cs.get(b));
+            }
+        });
+
+        while (true)
+        {
+            int bestA = -1, bestB = -1;
+            double best = MERGE_SIMILARITY;
+            for (int b = known; b < k; b++)
+            {
+                for (int a = 0; a < b; a++)
+                {
+                    if (sizes[a] > 0 && sizes[b] > 0 && sim[a][b] >= best)
+                    {
+                        bestA = a;
+                        bestB = b;
+                        best = sim[a][b];
+                    }
+                }
+            }
+            if (bestA < 0) return;
+
+            Centroid a = cs.get(bestA), b = cs.get(bestB);
+            float[] v = new float[DIM];
+            double norm = 0;
+            for (int x = 0; x < DIM; x++)
+            {
+                v[x] = a.vector[x] + b.vector[x];
+                norm += v[x] * v[x];
+            }
+            cs.set(bestA, new Centroid(a.id, v, Math.sqrt(norm), a.weight + b.weight, a.lastSeen, a.label));
+            cs.set(bestB, null);
+            for (int i = 0; i < assign.length; i++)
+            {
+                if (assign[i] == bestB) assign[i] = bestA;
+            }
+            sizes[bestA] += sizes[bestB];
+            sizes[bestB] = 0;
+            for (int x = 0; x < k; x++)
+            {
+                if (x == bestA || sizes[x] == 0 || Math.max(x, bestA) < known) continue;
+                sim[Math.min(x, bestA)][Math.max(x, bestA)] = cosine(cs.get(bestA), cs.get(x));
+            }
+        }
+    }
+
+    private static double cosine(Centroid a, Centroid b)
+    {
+        if (a.norm == 0 || b.norm == 0) return 0;
+        double s = 0;
+        for (int x = 0; x < DIM; x++) s += a.vector[x] * b.vector[x];
+        return s / (a.norm * b.norm);
+    }
+
+    private static int[][] members(int[] assign, int clusters)
+    {
+        int[] counts = new int[clusters];
+        for (int a : assign)
+        {
+            if (a >= 0) counts[a]++;
+        }
+        int[][] members = new int[clusters][];
+        for (int k = 0; k < clusters; k++) members[k] = new int[counts[k]];
+        int[] fill = new int[clusters];
+        for (int i = 0; i < assign.length; i++)
+        {
+            if (assign[i] >= 0) members[assign[i]][fill[assign[i]]++] = i;
+        }
+        return members;
+    }
+
+    /**
+     * For each paper the index of the first earlier, near-identical paper of the same cluster, or -1.
+     * <p>
+     * Exact prefix filtering instead of comparing all pairs: with features ordered rarest first, the
+     * prefix of a paper is cut where the norm of the remaining features drops below the threshold t.
+     * Two unit vectors without a common feature in the prefix of one of them have a dot product
+     * below t, so only papers sharing a prefix feature (usually rare words) are compared.
+     * Features in more than MAX_POSTINGS papers are not used as candidates, which bounds the work
+     * on degenerate input.
+     */
+    private int[] nearDuplicates(Doc[] docs, int[] assign)
+    {
+        int[] df = new int[DIM];
+        for (Doc d : docs)
+        {
+            for (int b : d.idx) df[b]++;
+        }
+
+        // inverted index bucket -> papers, ascending (CSR layout)
+        int[] offsets = new int[DIM + 1];
+        for (int b = 0; b < DIM; b++) offsets[b + 1] = offsets[b] + df[b];
+        int[] postings = new int[offsets[DIM]];
+        int[] fill = Arrays.copyOf(offsets, DIM);
+        for (int i = 0; i < docs.length; i++)
+        {
+            for (int b : docs[i].idx) postings[fill[b]++] = i;
+        }
+
+        double threshold = duplicateSimilarity * duplicateSimilarity;
+        int[] duplicateOf = new int[docs.length];
+        ThreadLocal<float[]> dense = ThreadLocal.withInitial(() -> new float[DIM]);
+        ThreadLocal<int[]> seen = ThreadLocal.withInitial(() -> {
+            int[] a = new int[docs.length];
+            Arrays.fill(a, -1);
+            return a;
+        });
+        IntStream.range(0, docs.length).parallel().forEach(i -> {
+            if (assign[i] < 0)
+            {
+                duplicateOf[i] = -1;
+                return;
+            }
+            Doc d = docs[i];
+            long[] order = new long[d.idx.length];
+            for (int t = 0; t < order.length; t++) order[t] = ((long) df[d.idx[t]] << 32) | t;
+            Arrays.sort(order);
+
+            float[] x = dense.get();
+            int[] mark = seen.get();
+            for (int t = 0; t < d.idx.length; t++) x[d.idx[t]] = d.val[t];
+            int first = -1;
+            double rest = 1;
+            for (int r = 0; r < order.length && rest >= threshold; r++)
+            {
+                int t = (int) order[r];
+                rest -= (double) d.val[t] * d.val[t];
+                int b = d.idx[t];
+                if (df[b] > MAX_POSTINGS) continue;
+                for (int p = offsets[b]; p < offsets[b + 1]; p++)
+                {
+                    int j = postings[p];
+                    if (j >= i || (first >= 0 && j >= first)) break;
+                    if (mark[j] == i || assign[j] != assign[i]) continue;
+                    mark[j] = i;
+                    Doc o = docs[j];
+                    double s = 0;
+                    for (int u = 0; u < o.idx.length; u++) s += o.val[u] * x[o.idx[u]];
+                    if (s >= duplicateSimilarity) first = j;
+                }
+            }
+            for (int t = 0; t < d.idx.length; t++) x[d.idx[t]] = 0;
+            duplicateOf[i] = first;
+        });
+        for (int i = 0; i < duplicateOf.length; i++)
+        {
+            if (duplicateOf[i] >= 0 && duplicateOf[duplicateOf[i]] >= 0)
+            {
+                duplicateOf[i] = duplicateOf[duplicateOf[i]]; // earlier entries are already resolved
+            }
+        }
+        return duplicateOf;
+    }
+
+    private static List<Paper> order(List<Paper> papers, Doc[] docs, List<Centroid> cs, int[][] members,
+                                     int[] assign, int[] duplicateOf)
+    {
+        Integer[] clusters = new Integer[cs.size()];
+        for (int k = 0; k < clusters.length; k++) clusters[k] = k;
+        Arrays.sort(clusters, Comparator.<Integer>comparingInt(k -> -members[k].length)
+                .thenComparingInt(k -> members[k].length == 0 ? Integer.MAX_VALUE : members[k][0]));
+
+        List<Paper> grouped = new ArrayList<>(papers.size());
+        List<Integer> singles = new ArrayList<>();
+        for (int k : clusters)
+        {
+            int[] m = members[k];
+            if (m.length == 0) continue;
+            Centroid c = cs.get(k);
+            if (m.length == 1)
+            {
+                tag(papers.get(m[0]), c, null).setTopicLabel(null);
+                singles.add(m[0]);
+                continue;
+            }
+            c.label = label(docs, m, c.label);
+            for (int i : m)
+            {
+                if (duplicateOf[i] >= 0) continue;
+                grouped.add(tag(papers.get(i), c, null));
+                for (int j : m)
+                {
+                    if (duplicateOf[j] == i) grouped.add(tag(papers.get(j), c, papers.get(i).getId()));
+                }
+            }
+        }
+        for (int i = 0; i < assign.length; i++)
+        {
+            if (assign[i] >= 0) continue;
+            Paper p = papers.get(i);
+            p.setTopicId(-1);
+            p.setTopicLabel(null);
+            p.setDuplicateOf(null);
+            singles.add(i);
+        }
+        Collections.sort(singles);
+        for (int i : singles) grouped.add(papers.get(i));
+        return grouped;
+    }
+
+    private static Paper tag(Paper p, Centroid c, String duplicateOf)
+    {
+        p.setTopicId(c.id);
+        p.setTopicLabel(c.label);
+        p.setDuplicateOf(duplicateOf);
+        return p;
+    }
+
+    /**
+     * The title terms shared by most members, bigrams preferred over their own words.
+     */
+    private static String label(Doc[] docs, int[] members, String previous)
+    {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i : members)
+        {
+            for (String f : docs[i].titleTerms) counts.merge(f, 1, Integer::sum);
+        }
+        List<String> ranked = counts.entrySet().stream()
+                .filter(e -> e.getValue() > 1)
+                .sorted(Comparator.<Map.Entry<String, Integer>>comparingInt(e -> -e.getValue())
+                        .thenComparing(e -> e.getKey().indexOf(' ') < 0)
+                        .thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        List<String> picked = new ArrayList<>();
+        Set<String> used = new HashSet<>();
+        for (String term : ranked)
+        {
+            if (picked.size() == LABEL_TERMS) break;
+            if (Arrays.stream(term.split(" ")).anyMatch(used::contains)) continue;
+            picked.add(term);
+            used.addAll(Arrays.asList(term.split(" ")));
+        }
+        if (picked.isEmpty()) return (previous != null) ? previous : "Related papers";
+        return String.join(", ", picked);
+    }
+
+    // ---------------- Storage ----------------
+
+    private void load() throws IOException
+    {
+        if (centroids != null) return;
+        centroids = new ArrayList<>();
+        nextId = 0;
+        if (!Files.exists(centroidFile)) return;
+
+        LocalDate cutoff = LocalDate.now(ET).minusDays(MAX_IDLE_DAYS);
+        for (String line : Files.readAllLines(centroidFile, StandardCharsets.UTF_8))
+        {
+            Centroid c = parse(line);
+            if (c == null) continue;
+            nextId = Math.max(nextId, c.id + 1);
+            if (!c.lastSeen.isBefore(cutoff)) centroids.add(c);
+        }
+        logger.info("Loaded " + centroids.size() + " topic centroids.");
+    }
+
+    private void save() throws IOException
+    {
+        Files.createDirectories(centroidFile.toAbsolutePath().getParent());
+        Path tmp = centroidFile.resolveSibling(centroidFile.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            for (Centroid c : centroids)
+            {
+                w.write(format(c));
+                w.newLine();
+            }
+        }
+        Files.move(tmp, centroidFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Keeps the STORED_ENTRIES largest entries of the unit vector.
+     */
+    private static String format(Centroid c)
+    {
+        float[] magnitudes = new float[DIM];
+        int nonZero = 0;
+        for (float x : c.vector)
+        {
+            if (x != 0) magnitudes[nonZero++] = Math.abs(x);
+        }
+        float cutoff = 0;
+        if (nonZero > STORED_ENTRIES)
+        {
+            float[] sorted = Arrays.copyOf(magnitudes, nonZero);
+            Arrays.sort(sorted);
+            cutoff = sorted[nonZero - STORED_ENTRIES];
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(c.id).append('\t').append(c.weight).append('\t').append(c.lastSeen).append('\t')
+                .append(c.label == null ? "" : c.label.replace('\t', ' ')).append('\t');
+        int written = 0;
+        for (int b = 0; b < DIM && written < STORED_ENTRIES; b++)
+        {
+            if (c.vector[b] == 0 || Math.abs(c.vector[b]) < cutoff) continue;
+            if (written++ > 0) sb.append(' ');
+            sb.append(b).append(':').append((float) (c.vector[b] / c.norm));
+        }
+        return sb.toString();
+    }
+
+    private static Centroid parse(String line)
+    {
+        String[] p = line.split("\t", -1);
+        if (p.length != 5) return null;
+        try
+        {
+            float[] v = new float[DIM];
+            double norm = 0;
+            for (String entry : p[4].split(" "))
+            {
+                if (entry.isEmpty()) continue;
+                int colon = entry.indexOf(':');
+                float x = Float.parseFloat(entry.substring(colon + 1));
+                v[Integer.parseInt(entry.substring(0, colon))] = x;
+                norm += x * x;
+            }
+            return new Centroid(Integer.parseInt(p[0]), v, Math.sqrt(norm), Double.parseDouble(p[1]),
+                    LocalDate.parse(p[2]), p[3].isEmpty() ? null : p[3]);
+        } catch (RuntimeException e)
+        {
+            return null;
+        }
+    }
+}
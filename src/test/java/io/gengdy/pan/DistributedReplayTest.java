@@ -0,0 +1,86 @@
+package io.gengdy.pan;
+
+import io.gengdy.pan.harness.PipelineHarness;
+import io.gengdy.pan.model.TaskReport;
+import io.gengdy.pan.service.DistributedTaskService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Coordinator plus in-process workers sharing one file queue, against the local fakes.
+ */
+@SpringBootTest(classes = {ArxivSummaryMailerApplication.class})
+public class DistributedReplayTest
+{
+    private static final PipelineHarness harness = PipelineHarness.start();
+
+    @DynamicPropertySource
+    static void harnessProperties(DynamicPropertyRegistry registry)
+    {
+        registry.add("pan.home", () -> harness.home().toString());
+        registry.add("arxiv.categories", () -> "cs.DB, cs.LG");
+        registry.add("pan.distributed.from", () -> "2025-10-13");
+        registry.add("pan.distributed.until", () -> "2025-10-15");
+        registry.add("pan.queue.poll-ms", () -> "50");
+    }
+
+    @Autowired
+    private DistributedTaskService distributedTaskService;
+
+    @AfterAll
+    public static void shutdown() throws Exception
+    {
+        harness.close();
+    }
+
+    @Test
+    public void testCoordinatorAndWorkersDrainRun() throws Exception
+    {
+        harness.oai().setPapersPerDay(40);
+        harness.oai().setPageSize(15);
+
+        TaskReport report = runWithWorkers(3);
+
+        assertTrue(report.isSuccess(), "No task should fail: " + report);
+        assertEquals(3 * 40, report.getPapers(), "3 days x 40 papers, cross-listed papers counted once");
+        assertEquals(3 * 40, harness.gemini().getCallCount(), "Every paper summarized exactly once");
+        assertEquals(1, harness.smtp().getMessages().size());
+        assertTrue(harness.smtp().getMessages().get(0).getData().contains("[arXiv Daily Digest] 120 new papers today"));
+
+        // same window again: workers classify at crawl time, nothing is summarized or mailed
+        Thread.sleep(1_000); // run ids have second resolution
+        int modelCalls = harness.gemini().getCallCount();
+        TaskReport rerun = runWithWorkers(3);
+        assertEquals(0, rerun.getPapers());
+        assertEquals(modelCalls, harness.gemini().getCallCount(), "Unchanged papers must not be re-summarized");
+        assertEquals(1, harness.smtp().getMessages().size());
+    }
+
+    private TaskReport runWithWorkers(int count) throws Exception
+    {
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            Thread t = new Thread(distributedTaskService::runWorker, "test-worker-" + i);
+            t.start();
+            workers.add(t);
+        }
+        try
+        {
+            return distributedTaskService.coordinate();
+        } finally
+        {
+            for (Thread t : workers) t.interrupt();
+            for (Thread t : workers) t.join(10_000);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.gengdy.pan;
+
+import io.gengdy.pan.harness.PipelineHarness;
+import io.gengdy.pan.model.TaskReport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test of the daily task against the local fakes.
+ * <p>
+ * Disabled by default, run with:
+ * mvn test -Dtest=PipelineLoadTest -Dpan.loadtest=true [-Dpan.loadtest.papers=100000]
+ * <p>
+ * Tunables (system properties):
+ * - pan.loadtest.papers         papers per day (default 10000)
+ * - pan.loadtest.page-size      records per OAI page (default 2000, as arXiv)
+ * - pan.loadtest.oai-latency    ms per OAI page (default 200)
+ * - pan.loadtest.model-latency  ms per model call (default 20)
+ * - pan.loadtest.oai-503-every  every n-th OAI request fails with 503 (default 0 = never)
+ * - pan.loadtest.model-429-every every n-th model call fails with 429 (default 0 = never)
+ */
+@SpringBootTest(classes = {ArxivSummaryMailerApplication.class})
+@EnabledIfSystemProperty(named = "pan.loadtest", matches = "true")
+public class PipelineLoadTest
+{
+    private static final PipelineHarness harness = PipelineHarness.start();
+
+    @DynamicPropertySource
+    static void harnessProperties(DynamicPropertyRegistry registry)
+    {
+        registry.add("pan.home", () -> harness.home().toString());
+    }
+
+    @Autowired
+    private ArxivSummaryMailerApplication application;
+
+    @AfterAll
+    public static void shutdown() throws Exception
+    {
+        harness.close();
+    }
+
+    @Test
+    public void testDailyTaskThroughput()
+    {
+        int papers = Integer.getInteger("pan.loadtest.papers", 10000);
+        harness.oai().setPapersPerDay(papers);
+        harness.oai().setPageSize(Integer.getInteger("pan.loadtest.page-size", 2000));
+        harness.oai().setLatencyMillis(Long.getLong("pan.loadtest.oai-latency", 200L));
+        harness.oai().setFailureEvery(Integer.getInteger("pan.loadtest.oai-503-every", 0));
+        harness.gemini().setLatencyMillis(Long.getLong("pan.loadtest.model-latency", 20L));
+        harness.gemini().setRateLimitEvery(Integer.getInteger("pan.loadtest.model-429-every", 0));
+
+        TaskReport report = application.executeTask();
+
+        System.out.println("========== PAN load test ==========");
+        System.out.printf("papers/day        : %d%n", papers);
+        System.out.printf("crawl             : %d ms, %.1f papers/s (%d OAI requests, %d failed)%n",
+                report.getCrawlMillis(), report.throughput(report.getCrawlMillis()),
+                harness.oai().getRequestCount(), harness.oai().getFailureCount());
+        System.out.printf("summarize         : %d ms, %.1f papers/s (%d model calls, %d rate-limited)%n",
+                report.getSummarizeMillis(), report.throughput(report.getSummarizeMillis()),
+                harness.gemini().getCallCount(), harness.gemini().getRateLimitedCount());
+        System.out.printf("mail              : %d ms, %.1f papers/s (%d messages)%n",
+                report.getMailMillis(), report.throughput(report.getMailMillis()),
+                harness.smtp().getMessages().size());
+        System.out.printf("total             : %d ms%n", report.getTotalMillis());
+
+        assertTrue(report.isSuccess(), "Daily task failed under load: " + report);
+        assertEquals(papers, report.getPapers());
+        assertEquals(1, harness.smtp().getMessages().size());
+    }
+}
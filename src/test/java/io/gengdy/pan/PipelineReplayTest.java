@@ -0,0 +1,223 @@
+package io.gengdy.pan;
+
+import io.gengdy.pan.harness.PipelineHarness;
+import io.gengdy.pan.harness.SmtpSink;
+import io.gengdy.pan.model.Paper;
+import io.gengdy.pan.model.TaskReport;
+import io.gengdy.pan.service.ArxivCrawlerService;
+import io.gengdy.pan.service.GeminiAIService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the whole daily task against the local fakes, no network or credentials required.
+ */
+@SpringBootTest(classes = {ArxivSummaryMailerApplication.class})
+public class PipelineReplayTest
+{
+    private static final PipelineHarness harness = PipelineHarness.start();
+
+    @DynamicPropertySource
+    static void harnessProperties(DynamicPropertyRegistry registry)
+    {
+        registry.add("pan.home", () -> harness.home().toString());
+    }
+
+    @Autowired
+    private ArxivSummaryMailerApplication application;
+
+    @Autowired
+    private GeminiAIService geminiAIService;
+
+    @Autowired
+    private ArxivCrawlerService crawlerService;
+
+    @BeforeEach
+    public void reset()
+    {
+        harness.oai().clearRecordedPages();
+        harness.smtp().clear();
+        harness.gemini().setStallEvery(0);
+        harness.gemini().setStallBeforeHeaders(false);
+        harness.oai().setIdOffset(0);
+        harness.oai().setRevision(0);
+        harness.oai().setFailureEvery(0);
+        harness.oai().setRetryAfterSeconds(1);
+    }
+
+    @AfterAll
+    public static void shutdown() throws Exception
+    {
+        harness.close();
+    }
+
+    @Test
+    public void testSyntheticPagesAreCrawledSummarizedAndMailed()
+    {
+        harness.oai().setPapersPerDay(120);
+        harness.oai().setPageSize(50);
+        int oaiBefore = harness.oai().getRequestCount();
+        int modelBefore = harness.gemini().getCallCount();
+
+        TaskReport report = application.executeTask();
+
+        assertTrue(report.isSuccess(), "Task should succeed against the fakes");
+        assertEquals(120, report.getPapers());
+        assertEquals(3, harness.oai().getRequestCount() - oaiBefore, "120 papers in pages of 50 -> 3 requests");
+        assertEquals(120, harness.gemini().getCallCount() - modelBefore);
+
+        List<SmtpSink.Message> mails = harness.smtp().getMessages();
+        assertEquals(1, mails.size());
+        assertTrue(mails.get(0).getData().contains("[arXiv Daily Digest] 120 new papers today"));
+        assertEquals(List.of("reader1@localhost", "reader2@localhost"), mails.get(0).getRecipients());
+    }
+
+    @Test
+    public void testRecordedPagesAreReplayed() throws Exception
+    {
+        harness.oai().addRecordedPage(resource("oai/ListRecords-cs.DB-1.xml"));
+        harness.oai().addRecordedPage(resource("oai/ListRecords-cs.DB-2.xml"));
+
+        TaskReport report = application.executeTask();
+
+        assertTrue(report.isSuccess());
+        assertEquals(2, report.getPapers(), "Deleted record must be skipped");
+        String mail = harness.smtp().getMessages().get(0).getData();
+        assertTrue(mail.contains("[arXiv Daily Digest] 2 new papers today"));
+    }
+
+    @Test
+    public void testRecordedPagesCarryVersions() throws Exception
+    {
+        harness.oai().addRecordedPage(resource("oai/ListRecords-cs.DB-1.xml"));
+        harness.oai().addRecordedPage(resource("oai/ListRecords-cs.DB-2.xml"));
+
+        LocalDate day = LocalDate.of(2025, 10, 16);
+        List<Paper> papers = crawlerService.fetchPapers("cs.DB", day, day);
+
+        assertEquals(2, papers.size());
+        assertEquals("2510.14201", papers.get(0).getId());
+        assertEquals("v1", papers.get(0).getVersion());
+        Paper revised = papers.get(1);
+        assertEquals("2510.14277", revised.getId());
+        assertEquals("v2", revised.getVersion(), "Latest <version> of the arXivRaw record");
+        assertEquals(LocalDate.of(2025, 10, 15), revised.getCreatedDate(), "Submission date is the date of v1");
+        assertEquals("Yue Chen, Hao Li, Maria Garcia", revised.getAuthors());
+    }
+
+    @Test
+    public void testThrottledCrawlCompletesPagination()
+    {
+        harness.oai().setIdOffset(60_000);
+        harness.oai().setPapersPerDay(120);
+        harness.oai().setPageSize(50);
+        harness.oai().setFailureEvery(2);
+        int failuresBefore = harness.oai().getFailureCount();
+
+        long start = System.currentTimeMillis();
+        TaskReport report = application.executeTask();
+
+        assertTrue(report.isSuccess(), "503s in the middle of pagination must be retried");
+        assertEquals(120, report.getPapers());
+        int failures = harness.oai().getFailureCount() - failuresBefore;
+        assertTrue(failures >= 2, "Every second request was throttled");
+        assertTrue(report.getCrawlMillis() >= failures * 1000L, "Retry-After of 1 s must be honored");
+        assertTrue(System.currentTimeMillis() - start < 30_000);
+    }
+
+    @Test
+    public void testRerunMailsOnlyDeltas()
+    {
+        harness.oai().setIdOffset(50_000);
+        harness.oai().setPapersPerDay(30);
+        harness.oai().setPageSize(100);
+
+        TaskReport first = application.executeTask();
+        assertEquals(30, first.getPapers());
+        assertEquals(1, harness.smtp().getMessages().size());
+
+        int modelCalls = harness.gemini().getCallCount();
+        TaskReport unchanged = application.executeTask();
+        assertTrue(unchanged.isSuccess());
+        assertEquals(0, unchanged.getPapers(), "Nothing changed, nothing to mail");
+        assertEquals(1, harness.smtp().getMessages().size());
+        assertEquals(modelCalls, harness.gemini().getCallCount(), "Unchanged papers must not be re-summarized");
+
+        harness.oai().setRevision(1);
+        TaskReport revised = application.executeTask();
+        assertEquals(30, revised.getPapers());
+        assertEquals(modelCalls + 30, harness.gemini().getCallCount(), "Revised abstracts are summarized again");
+        assertTrue(harness.smtp().getMessages().get(1).getData()
+                .contains("[arXiv Daily Digest] Updates: 30 revised or late papers"));
+    }
+
+    @Test
+    public void testStalledModelCallsFallBackAtDeadline()
+    {
+        harness.gemini().setStallEvery(2);
+        harness.gemini().setStallMillis(30_000);
+        List<Paper> papers = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            papers.add(new Paper("2510.0000" + i, "title", "authors", "Abstract number " + i + ".", "url"));
+        }
+
+        long start = System.currentTimeMillis();
+        geminiAIService.summarizePaper(papers);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 10_000, "Two stalled calls must be cut at the 2s call deadline, took " + elapsed);
+        assertEquals(2, papers.stream().filter(Paper::isSummaryPartial).count());
+        for (Paper paper : papers)
+        {
+            assertNotNull(paper.getAiSummary(), "First streamed chunk should be kept as partial summary");
+        }
+    }
+
+    @Test
+    public void testModelCallsStalledBeforeFirstByteFallBack()
+    {
+        harness.gemini().setStallEvery(1);
+        harness.gemini().setStallBeforeHeaders(true);
+        harness.gemini().setStallMillis(30_000);
+        List<Paper> papers = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+        {
+            papers.add(new Paper("2510.1000" + i, "title", "authors", "Abstract number " + i + ".", "url"));
+        }
+
+        long start = System.currentTimeMillis();
+        geminiAIService.summarizePaper(papers);
+        long elapsed = System.currentTimeMillis() - start;
+
+        // more stalled calls than reader threads: the transport timeout has to free them
+        assertTrue(elapsed < 20_000, "Calls stalled before the first byte must end at the deadline, took " + elapsed);
+        assertTrue(papers.stream().allMatch(p -> p.getAiSummary() == null), "Nothing arrived, abstract only");
+
+        harness.gemini().setStallEvery(0);
+        Paper after = new Paper("2510.10009", "title", "authors", "Abstract after the stalls.", "url");
+        geminiAIService.summarizePaper(List.of(after));
+        assertNotNull(after.getAiSummary(), "Reader threads must be free again after the stalled calls");
+    }
+
+    private static String resource(String name) throws Exception
+    {
+        Path path = Paths.get(PipelineReplayTest.class.getClassLoader().getResource(name).toURI());
+        return Files.readString(path, StandardCharsets.UTF_8);
+    }
+}
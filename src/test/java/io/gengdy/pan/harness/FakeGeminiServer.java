@@ -0,0 +1,208 @@
+package io.gengdy.pan.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FakeGeminiServer
+ * <p>
+ * Embedded stand-in for the Generative Language REST API. Point the client at it through
+ * {@code gemini.base-url}. Every {@code models/{model}:generateContent} call is answered with a
+ * short summary derived from the request body, plus usage metadata estimated at ~4 chars/token.
+ * {@code :streamGenerateContent} calls get the same summary as server-sent events, split into
+ * {@link #CHUNKS} chunks.
+ * <p>
+ * Fault injection:
+ * - latencyMillis      : fixed delay before every response (first chunk when streaming)
+ * - chunkLatencyMillis : delay between two streamed chunks
+ * - rateLimitEvery     : every n-th call is answered with 429 RESOURCE_EXHAUSTED
+ * - stallEvery         : every n-th streamed call hangs for stallMillis after its first chunk,
+ *                        or before sending any byte when stallBeforeHeaders is set
+ */
+public class FakeGeminiServer implements AutoCloseable
+{
+    public static final int CHUNKS = 4;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    private volatile long latencyMillis = 0;
+    private volatile long chunkLatencyMillis = 0;
+    private volatile int rateLimitEvery = 0;
+    private volatile int stallEvery = 0;
+    private volatile long stallMillis = 60_000;
+    private volatile boolean stallBeforeHeaders = false;
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+
+    public FakeGeminiServer() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getBaseUrl()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public void setLatencyMillis(long latencyMillis)
+    {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setChunkLatencyMillis(long chunkLatencyMillis)
+    {
+        this.chunkLatencyMillis = chunkLatencyMillis;
+    }
+
+    public void setRateLimitEvery(int rateLimitEvery)
+    {
+        this.rateLimitEvery = rateLimitEvery;
+    }
+
+    public void setStallEvery(int stallEvery)
+    {
+        this.stallEvery = stallEvery;
+    }
+
+    public void setStallMillis(long stallMillis)
+    {
+        this.stallMillis = stallMillis;
+    }
+
+    public void setStallBeforeHeaders(boolean stallBeforeHeaders)
+    {
+        this.stallBeforeHeaders = stallBeforeHeaders;
+    }
+
+    public int getCallCount()
+    {
+        return calls.get();
+    }
+
+    public int getRateLimitedCount()
+    {
+        return rateLimited.get();
+    }
+
+    @Override
+    public void close()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ---------------- Request Handling ----------------
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            String body;
+            try (InputStream in = exchange.getRequestBody())
+            {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            String path = exchange.getRequestURI().getPath();
+            boolean streaming = path.contains(":streamGenerateContent");
+            if (!streaming && !path.contains(":generateContent"))
+            {
+                FakeOaiPmhServer.respond(exchange, 404, errorJson(404, "NOT_FOUND", "Unsupported path " + path),
+                        "application/json");
+                return;
+            }
+
+            int n = calls.incrementAndGet();
+            FakeOaiPmhServer.sleep(latencyMillis);
+
+            if (rateLimitEvery > 0 && n % rateLimitEvery == 0)
+            {
+                rateLimited.incrementAndGet();
+                FakeOaiPmhServer.respond(exchange, 429,
+                        errorJson(429, "RESOURCE_EXHAUSTED", "Resource has been exhausted (e.g. check quota)."),
+                        "application/json");
+                return;
+            }
+
+            boolean stall = streaming && stallEvery > 0 && n % stallEvery == 0;
+            if (stall && stallBeforeHeaders)
+            {
+                FakeOaiPmhServer.sleep(stallMillis);
+                stall = false;
+            }
+            if (streaming)
+            {
+                stream(exchange, summaryFor(body), body.length() / 4, stall);
+                return;
+            }
+            FakeOaiPmhServer.respond(exchange, 200, responseJson(summaryFor(body), body.length() / 4),
+                    "application/json; charset=UTF-8");
+        } finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Server-sent events, one partial response per chunk; usage metadata rides on the last one.
+     */
+    private void stream(HttpExchange exchange, String summary, int promptTokens, boolean stall) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody())
+        {
+            int step = (summary.length() + CHUNKS - 1) / CHUNKS;
+            for (int i = 0; i < CHUNKS; i++)
+            {
+                if (i > 0)
+                {
+                    FakeOaiPmhServer.sleep(stall && i == 1 ? stallMillis : chunkLatencyMillis);
+                }
+                String part = summary.substring(Math.min(summary.length(), i * step),
+                        Math.min(summary.length(), (i + 1) * step));
+                String json = (i == CHUNKS - 1)
+                        ? responseJson(part, promptTokens)
+                        : "{\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":[{\"text\":\"" + part
+                        + "\"}]},\"index\":0}],\"modelVersion\":\"fake-model\"}";
+                os.write(("data: " + json + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            }
+        }
+    }
+
+    static String summaryFor(String requestBody)
+    {
+        return "Fake summary " + Integer.toHexString(requestBody.hashCode())
+                + ": the paper proposes a method and evaluates it on standard benchmarks.";
+    }
+
+    static String responseJson(String text, int promptTokens)
+    {
+        int candidateTokens = Math.max(1, text.length() / 4);
+        return "{\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":[{\"text\":\"" + text + "\"}]},"
+                + "\"finishReason\":\"STOP\",\"index\":0}],"
+                + "\"usageMetadata\":{\"promptTokenCount\":" + promptTokens
+                + ",\"candidatesTokenCount\":" + candidateTokens
+                + ",\"totalTokenCount\":" + (promptTokens + candidateTokens) + "},"
+                + "\"modelVersion\":\"fake-model\"}";
+    }
+
+    private static String errorJson(int code, String status, String message)
+    {
+        return "{\"error\":{\"code\":" + code + ",\"message\":\"" + message + "\",\"status\":\"" + status + "\"}}";
+    }
+}
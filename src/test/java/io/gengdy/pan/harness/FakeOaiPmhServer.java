@@ -0,0 +1,311 @@
+package io.gengdy.pan.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * FakeOaiPmhServer
+ * <p>
+ * Embedded OAI-PMH endpoint that answers ListRecords requests the same way
+ * https://oaipmh.arxiv.org/oai does, so the crawler can be exercised without network.
+ * Only the arXivRaw metadata format is served, other formats get cannotDisseminateFormat.
+ * <p>
+ * Two sources of pages are supported:
+ * - recorded : XML pages added with {@link #addRecordedPage(String)}, served in order and
+ *              chained through the resumptionToken each page carries
+ * - synthetic: {@link #setPapersPerDay(int)} records per (set, date), generated
+ *              deterministically from the request and split into {@link #setPageSize(int)} pages;
+ *              {@link #setIdOffset(int)} shifts the identifiers, {@link #setRevision(int)} re-lists
+ *              the same papers as a later version with a changed abstract
+ * <p>
+ * Fault injection:
+ * - latencyMillis     : fixed delay before every response
+ * - failureEvery      : every n-th request is answered with failureStatus (default 503) and a
+ *                       Retry-After header (omitted when retryAfterSeconds is negative)
+ */
+public class FakeOaiPmhServer implements AutoCloseable
+{
+    private static final Pattern TOKEN = Pattern.compile("<resumptionToken[^>]*>([^<]+)</resumptionToken>");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    private final List<String> recordedPages = new ArrayList<>();
+    private final Map<String, Integer> recordedTokenToNextPage = new HashMap<>();
+
+    private volatile int papersPerDay = 100;
+    private volatile int pageSize = 2000;
+    private volatile int idOffset = 0;
+    private volatile int revision = 0;
+    private volatile long latencyMillis = 0;
+    private volatile int failureEvery = 0;
+    private volatile int retryAfterSeconds = 1;
+    private volatile int failureStatus = 503;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public FakeOaiPmhServer() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/oai", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getBaseUrl()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/oai";
+    }
+
+    public void addRecordedPage(String xml)
+    {
+        synchronized (recordedPages)
+        {
+            Matcher m = TOKEN.matcher(xml);
+            if (m.find())
+            {
+                recordedTokenToNextPage.put(m.group(1).trim(), recordedPages.size() + 1);
+            }
+            recordedPages.add(xml);
+        }
+    }
+
+    public void clearRecordedPages()
+    {
+        synchronized (recordedPages)
+        {
+            recordedPages.clear();
+            recordedTokenToNextPage.clear();
+        }
+    }
+
+    public void setPapersPerDay(int papersPerDay)
+    {
+        this.papersPerDay = papersPerDay;
+    }
+
+    public void setPageSize(int pageSize)
+    {
+        this.pageSize = pageSize;
+    }
+
+    public void setIdOffset(int idOffset)
+    {
+        this.idOffset = idOffset;
+    }
+
+    public void setRevision(int revision)
+    {
+        this.revision = revision;
+    }
+
+    public void setLatencyMillis(long latencyMillis)
+    {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setFailureEvery(int failureEvery)
+    {
+        this.failureEvery = failureEvery;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds)
+    {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public void setFailureStatus(int failureStatus)
+    {
+        this.failureStatus = failureStatus;
+    }
+
+    public int getRequestCount()
+    {
+        return requests.get();
+    }
+
+    public int getFailureCount()
+    {
+        return failures.get();
+    }
+
+    @Override
+    public void close()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ---------------- Request Handling ----------------
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            int n = requests.incrementAndGet();
+            sleep(latencyMillis);
+
+            if (failureEvery > 0 && n % failureEvery == 0)
+            {
+                failures.incrementAndGet();
+                if (retryAfterSeconds >= 0)
+                {
+                    exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+                }
+                respond(exchange, failureStatus, "Service Unavailable", "text/plain");
+                return;
+            }
+
+            Map<String, String> q = parseQuery(exchange.getRequestURI());
+            if (!"ListRecords".equals(q.get("verb")))
+            {
+                respond(exchange, 400, errorXml("badVerb", "Only ListRecords is supported"), "text/xml");
+                return;
+            }
+
+            String prefix = q.get("metadataPrefix");
+            if (q.get("resumptionToken") == null && !"arXivRaw".equals(prefix))
+            {
+                respond(exchange, 200, errorXml("cannotDisseminateFormat", "Unsupported format " + prefix), "text/xml");
+                return;
+            }
+
+            String body;
+            synchronized (recordedPages)
+            {
+                body = recordedPages.isEmpty() ? null : recordedPage(q.get("resumptionToken"));
+            }
+            if (body == null)
+            {
+                body = syntheticPage(q);
+            }
+            respond(exchange, 200, body, "text/xml; charset=UTF-8");
+        } finally
+        {
+            exchange.close();
+        }
+    }
+
+    private String recordedPage(String token)
+    {
+        if (token == null) return recordedPages.get(0);
+        Integer next = recordedTokenToNextPage.get(token);
+        if (next == null || next >= recordedPages.size())
+        {
+            return errorXml("badResumptionToken", "Unknown token " + token);
+        }
+        return recordedPages.get(next);
+    }
+
+    /**
+     * Token format: set|date|offset, so paging is stateless and reproducible.
+     */
+    private String syntheticPage(Map<String, String> q)
+    {
+        String set;
+        String date;
+        int offset;
+        String token = q.get("resumptionToken");
+        if (token != null)
+        {
+            String[] p = token.split("\\|");
+            if (p.length != 3) return errorXml("badResumptionToken", "Malformed token " + token);
+            set = p[0];
+            date = p[1];
+            offset = Integer.parseInt(p[2]);
+        } else
+        {
+            set = q.getOrDefault("set", "cs:cs:AI");
+            date = q.getOrDefault("from", "2025-01-01");
+            offset = 0;
+        }
+
+        int total = papersPerDay;
+        if (total == 0) return errorXml("noRecordsMatch", "No records");
+
+        int end = Math.min(total, offset + pageSize);
+        StringBuilder xml = new StringBuilder(256 + (end - offset) * 1200);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">")
+                .append("<responseDate>").append(date).append("T00:00:00Z</responseDate>")
+                .append("<ListRecords>");
+        for (int i = offset; i < end; i++)
+        {
+            SyntheticPapers.appendRecord(xml, set, date, idOffset + i, revision);
+        }
+        if (end < total)
+        {
+            xml.append("<resumptionToken cursor=\"").append(offset)
+                    .append("\" completeListSize=\"").append(total).append("\">")
+                    .append(set).append('|').append(date).append('|').append(end)
+                    .append("</resumptionToken>");
+        } else
+        {
+            xml.append("<resumptionToken cursor=\"").append(offset)
+                    .append("\" completeListSize=\"").append(total).append("\"/>");
+        }
+        xml.append("</ListRecords></OAI-PMH>");
+        return xml.toString();
+    }
+
+    // ---------------- Utilities ----------------
+
+    private static String errorXml(String code, String message)
+    {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">"
+                + "<error code=\"" + code + "\">" + SyntheticPapers.escape(message) + "</error></OAI-PMH>";
+    }
+
+    private static Map<String, String> parseQuery(URI uri)
+    {
+        Map<String, String> out = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) return out;
+        for (String kv : raw.split("&"))
+        {
+            int eq = kv.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(kv.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    static void respond(HttpExchange exchange, int status, String body, String contentType) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody())
+        {
+            os.write(bytes);
+        }
+    }
+
+    static void sleep(long millis)
+    {
+        if (millis <= 0) return;
+        try
+        {
+            Thread.sleep(millis);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.gengdy.pan.harness;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PipelineHarness
+ * <p>
+ * Starts the fake OAI-PMH server, the fake model endpoint and the SMTP sink, and writes a
+ * throw-away PAN_HOME whose etc/pan.properties points the application at them.
+ * <p>
+ * Usage in a Spring test:
+ * <pre>
+ * static PipelineHarness harness = PipelineHarness.start();
+ *
+ * &#64;DynamicPropertySource
+ * static void props(DynamicPropertyRegistry r) { r.add("pan.home", () -&gt; harness.home().toString()); }
+ * </pre>
+ */
+public class PipelineHarness implements AutoCloseable
+{
+    private final FakeOaiPmhServer oai;
+    private final FakeGeminiServer gemini;
+    private final SmtpSink smtp;
+    private final Path home;
+
+    private PipelineHarness(FakeOaiPmhServer oai, FakeGeminiServer gemini, SmtpSink smtp, Path home)
+    {
+        this.oai = oai;
+        this.gemini = gemini;
+        this.smtp = smtp;
+        this.home = home;
+    }
+
+    public static PipelineHarness start()
+    {
+        try
+        {
+            Path home = Files.createTempDirectory("pan-home-");
+            Files.createDirectories(home.resolve("etc"));
+            Files.createDirectories(home.resolve("log"));
+            PipelineHarness h = new PipelineHarness(new FakeOaiPmhServer(), new FakeGeminiServer(), new SmtpSink(), home);
+            h.writeConfig();
+            return h;
+        } catch (IOException e)
+        {
+            throw new RuntimeException("Failed to start pipeline harness", e);
+        }
+    }
+
+    public FakeOaiPmhServer oai()
+    {
+        return oai;
+    }
+
+    public FakeGeminiServer gemini()
+    {
+        return gemini;
+    }
+
+    public SmtpSink smtp()
+    {
+        return smtp;
+    }
+
+    public Path home()
+    {
+        return home;
+    }
+
+    public Map<String, String> defaultProperties()
+    {
+        Map<String, String> p = new LinkedHashMap<>();
+        p.put("pan.mode", "daemon");
+        p.put("pan.schedule.cron", "-");
+        p.put("spring.mail.host", "127.0.0.1");
+        p.put("spring.mail.port", String.valueOf(smtp.getPort()));
+        p.put("spring.mail.protocol", "smtp");
+        p.put("spring.mail.default-encoding", "UTF-8");
+        p.put("spring.mail.properties.mail.smtp.ssl.enable", "false");
+        p.put("arxiv.oai-url", oai.getBaseUrl());
+        p.put("arxiv.categories", "cs.DB");
+        p.put("arxiv.min-interval-ms", "0");
+        p.put("arxiv.latency-factor", "0");
+        p.put("arxiv.backoff-base-ms", "100");
+        p.put("mailer.sender", "pan@localhost");
+        p.put("mailer.recipients", "reader1@localhost, reader2@localhost");
+        p.put("gemini.api-key", "fake-key");
+        p.put("gemini.base-url", gemini.getBaseUrl());
+        p.put("gemini.model-name", "fake-model");
+        p.put("gemini.prompt", "Summarize the following paper abstract.");
+        p.put("gemini.request-interval-ms", "0");
+        p.put("gemini.call-timeout-ms", "2000");
+        return p;
+    }
+
+    private void writeConfig() throws IOException
+    {
+        try (Writer w = Files.newBufferedWriter(home.resolve("etc").resolve("pan.properties"), StandardCharsets.UTF_8))
+        {
+            w.write("# Generated by PipelineHarness\n");
+            for (Map.Entry<String, String> e : defaultProperties().entrySet())
+            {
+                w.write(e.getKey() + "=" + e.getValue().replace("\\", "\\\\").replace(":", "\\:") + "\n");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        oai.close();
+        gemini.close();
+        smtp.close();
+    }
+}
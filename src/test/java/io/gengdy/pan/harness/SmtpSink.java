@@ -0,0 +1,193 @@
+package io.gengdy.pan.harness;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * SmtpSink
+ * <p>
+ * In-process SMTP server that accepts every message and keeps it in memory.
+ * Only the plain-text subset used by JavaMail is implemented (no TLS, no AUTH),
+ * so the mailer must be configured with spring.mail.protocol=smtp.
+ */
+public class SmtpSink implements AutoCloseable
+{
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Message> messages = Collections.synchronizedList(new ArrayList<>());
+
+    public SmtpSink() throws IOException
+    {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.submit(this::acceptLoop);
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    public List<Message> getMessages()
+    {
+        synchronized (messages)
+        {
+            return new ArrayList<>(messages);
+        }
+    }
+
+    public void clear()
+    {
+        messages.clear();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    // ---------------- SMTP Session ----------------
+
+    private void acceptLoop()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> session(socket));
+            } catch (SocketException e)
+            {
+                return; // closed
+            } catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void session(Socket socket)
+    {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.ISO_8859_1));
+             Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.ISO_8859_1))
+        {
+            reply(out, "220 localhost SmtpSink ready");
+            String from = null;
+            List<String> rcpt = new ArrayList<>();
+
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                String cmd = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (cmd)
+                {
+                    case "EHLO":
+                        reply(out, "250-localhost\r\n250-8BITMIME\r\n250 SIZE 0");
+                        break;
+                    case "HELO":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "MAIL":
+                        from = address(line);
+                        rcpt.clear();
+                        reply(out, "250 OK");
+                        break;
+                    case "RCPT":
+                        rcpt.add(address(line));
+                        reply(out, "250 OK");
+                        break;
+                    case "RSET":
+                        from = null;
+                        rcpt.clear();
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        messages.add(new Message(from, new ArrayList<>(rcpt), readData(in)));
+                        reply(out, "250 OK queued");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e)
+        {
+            // client went away
+        }
+    }
+
+    private static String readData(BufferedReader in) throws IOException
+    {
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals("."))
+        {
+            if (line.startsWith("..")) line = line.substring(1); // dot-stuffing
+            data.append(line).append("\r\n");
+        }
+        return data.toString();
+    }
+
+    private static String address(String line)
+    {
+        int lt = line.indexOf('<');
+        int gt = line.indexOf('>', lt + 1);
+        return (lt >= 0 && gt > lt) ? line.substring(lt + 1, gt) : line.substring(line.indexOf(':') + 1).trim();
+    }
+
+    private static void reply(Writer out, String text) throws IOException
+    {
+        out.write(text);
+        out.write("\r\n");
+        out.flush();
+    }
+
+    // ---------------- Received Message ----------------
+
+    public static class Message
+    {
+        private final String from;
+        private final List<String> recipients;
+        private final String data;
+
+        Message(String from, List<String> recipients, String data)
+        {
+            this.from = from;
+            this.recipients = recipients;
+            this.data = data;
+        }
+
+        public String getFrom()
+        {
+            return from;
+        }
+
+        public List<String> getRecipients()
+        {
+            return recipients;
+        }
+
+        /**
+         * Raw RFC 822 message, headers and (possibly encoded) body.
+         */
+        public String getData()
+        {
+            return data;
+        }
+    }
+}
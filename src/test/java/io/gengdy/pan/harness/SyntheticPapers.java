@@ -0,0 +1,114 @@
+package io.gengdy.pan.harness;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Deterministic generator for arXiv-like OAI-PMH records in the arXivRaw format.
+ * <p>
+ * The same (set, date, index) always yields the same record, so replays are reproducible.
+ * Records of different sets on the same date share identifiers, mimicking cross-listed papers.
+ */
+public final class SyntheticPapers
+{
+    private static final String[] TOPICS = {
+            "query optimization", "vector databases", "transaction processing", "graph neural networks",
+            "large language models", "index structures", "stream processing", "data cleaning",
+            "federated learning", "approximate query answering", "learned cardinality estimation",
+            "distributed consensus", "reinforcement learning", "knowledge graphs", "time series forecasting"
+    };
+
+    private static final String[] WORDS = {
+            "we", "propose", "a", "novel", "framework", "for", "efficient", "scalable", "robust",
+            "evaluation", "shows", "that", "our", "method", "outperforms", "state-of-the-art", "baselines",
+            "on", "several", "benchmarks", "while", "reducing", "latency", "and", "memory", "footprint",
+            "experiments", "demonstrate", "significant", "improvements", "in", "accuracy", "throughput",
+            "the", "approach", "is", "simple", "to", "implement", "generalizes", "across", "workloads"
+    };
+
+    private static final String[] KEYNAMES = {"Zhang", "Smith", "Mueller", "Garcia", "Kim", "Rossi", "Nguyen", "Ivanov"};
+    private static final String[] FORENAMES = {"Wei", "Alice", "Jonas", "Maria", "Min-jun", "Luca", "Linh", "Olga"};
+
+    private SyntheticPapers()
+    {
+    }
+
+    /**
+     * arXiv-style identifier without version, e.g. 2510.1700042 for date 2025-10-17 and index 41.
+     * The day is folded into the number so that multi-day windows never collide.
+     */
+    public static String arxivId(String date, int index)
+    {
+        String yymm = date.substring(2, 4) + date.substring(5, 7);
+        return String.format("%s.%s%05d", yymm, date.substring(8, 10), index + 1);
+    }
+
+    /**
+     * Appends one record. Revision r > 0 lists versions v1 .. v(r+1), the latest with a changed abstract.
+     */
+    public static void appendRecord(StringBuilder xml, String set, String date, int index, int revision)
+    {
+        String id = arxivId(date, index);
+        Random rnd = new Random(id.hashCode());
+        String topic = TOPICS[rnd.nextInt(TOPICS.length)];
+        String day = LocalDate.parse(date).atStartOfDay(ZoneOffset.UTC).format(DateTimeFormatter.RFC_1123_DATE_TIME);
+
+        xml.append("<record><header>")
+                .append("<identifier>oai:arXiv.org:").append(id).append("</identifier>")
+                .append("<datestamp>").append(date).append("</datestamp>")
+                .append("<setSpec>").append(set).append("</setSpec>")
+                .append("</header><metadata><arXivRaw xmlns=\"http://arxiv.org/OAI/arXivRaw/\">")
+                .append("<id>").append(id).append("</id>");
+        for (int v = 1; v <= revision + 1; v++)
+        {
+            xml.append("<version version=\"v").append(v).append("\"><date>").append(day)
+                    .append("</date><size>").append(100 + rnd.nextInt(900)).append("kb</size></version>");
+        }
+        xml.append("<title>").append(escape(title(rnd, topic))).append("</title>")
+                .append("<authors>");
+        int authors = 1 + rnd.nextInt(4);
+        for (int a = 0; a < authors; a++)
+        {
+            xml.append(a == 0 ? "" : (a == authors - 1 ? " and " : ", "))
+                    .append(escape(FORENAMES[rnd.nextInt(FORENAMES.length)] + " " + KEYNAMES[rnd.nextInt(KEYNAMES.length)]));
+        }
+        xml.append("</authors>")
+                .append("<abstract>")
+                .append(revision > 0 ? "Revised (r" + revision + "). " : "")
+                .append(escape(abstractText(rnd, topic))).append("</abstract>")
+                .append("</arXivRaw></metadata></record>");
+    }
+
+    private static String title(Random rnd, String topic)
+    {
+        return "Towards " + WORDS[4 + rnd.nextInt(6)] + " " + topic;
+    }
+
+    /**
+     * Roughly 150-250 words with a bit of inline LaTeX, similar to real arXiv abstracts.
+     */
+    private static String abstractText(Random rnd, String topic)
+    {
+        StringBuilder sb = new StringBuilder(1600);
+        sb.append("  This paper studies ").append(topic).append(". ");
+        int words = 150 + rnd.nextInt(100);
+        for (int i = 0; i < words; i++)
+        {
+            if (i > 0 && i % 37 == 0)
+            {
+                sb.append("$O(n \\log n)$ ");
+            }
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+            sb.append(i % 15 == 14 ? ".\n  " : " ");
+        }
+        sb.append("Code is available at \\url{https://example.org/").append(topic.replace(' ', '-')).append("}.");
+        return sb.toString();
+    }
+
+    static String escape(String s)
+    {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
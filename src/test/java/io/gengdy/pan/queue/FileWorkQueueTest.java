@@ -0,0 +1,188 @@
+package io.gengdy.pan.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileWorkQueueTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testLeaseAckRoundTrip() throws Exception
+    {
+        FileWorkQueue queue = new FileWorkQueue(dir, 60_000, 3);
+        assertTrue(queue.enqueue(WorkTask.crawl("run1", 0, "cs.DB", "2025-10-01", "2025-10-07")));
+        assertFalse(queue.enqueue(WorkTask.crawl("run1", 0, "cs.DB", "2025-10-01", "2025-10-07")),
+                "Same task id must not be queued twice");
+
+        WorkTask task = queue.lease();
+        assertNotNull(task);
+        assertEquals(WorkTask.Type.CRAWL, task.getType());
+        assertEquals("cs.DB", task.get("category"));
+        assertEquals("2025-10-07", task.get("until"));
+        assertNull(queue.lease(), "Leased task must not be handed out again");
+        assertEquals(1, queue.pending("run1"));
+
+        assertTrue(queue.ack(task));
+        assertEquals(0, queue.pending("run1"));
+    }
+
+    @Test
+    public void testExpiredLeaseIsReclaimed() throws Exception
+    {
+        FileWorkQueue queue = new FileWorkQueue(dir, 100, 3);
+        queue.enqueue(WorkTask.summarize("run1", "2510.00001"));
+
+        WorkTask crashed = queue.lease(); // worker dies without ack
+        assertNotNull(crashed);
+        assertEquals(0, queue.reclaimExpired(), "Fresh lease must not be reclaimed");
+
+        Thread.sleep(250);
+        assertEquals(1, queue.reclaimExpired());
+
+        WorkTask retried = queue.lease();
+        assertNotNull(retried);
+        assertEquals("2510.00001", retried.get("paperId"));
+        assertEquals(1, retried.getAttempts());
+        assertFalse(queue.ack(crashed), "The crashed worker's lease is gone");
+        assertTrue(queue.ack(retried));
+    }
+
+    @Test
+    public void testStaleWorkerCannotTouchTheNewLease() throws Exception
+    {
+        FileWorkQueue queue = new FileWorkQueue(dir, 100, 3);
+        queue.enqueue(WorkTask.summarize("run1", "2510.00001"));
+        WorkTask stale = queue.lease(); // worker stalls past its lease
+        Thread.sleep(250);
+        assertEquals(1, queue.reclaimExpired());
+        WorkTask live = queue.lease();
+        assertNotNull(live);
+
+        assertFalse(queue.ack(stale), "A stale ack must not delete the live lease");
+        queue.release(stale);
+        assertNull(queue.lease(), "A stale release must not requeue the live lease");
+        assertEquals(1, queue.pending("run1"));
+
+        Thread.sleep(250);
+        assertFalse(queue.heartbeat(stale), "A stale heartbeat must not renew the live lease");
+        assertEquals(1, queue.reclaimExpired(), "The live lease expired, nobody renewed it");
+
+        WorkTask third = queue.lease();
+        assertTrue(queue.heartbeat(third));
+        assertFalse(queue.ack(live));
+        assertTrue(queue.ack(third));
+        assertEquals(0, queue.pending("run1"));
+    }
+
+    @Test
+    public void testReleaseMovesToFailedAfterMaxAttempts() throws Exception
+    {
+        FileWorkQueue queue = new FileWorkQueue(dir, 60_000, 2);
+        queue.enqueue(WorkTask.summarize("run1", "cs/0112017"));
+
+        queue.release(queue.lease());
+        assertEquals(1, queue.pending("run1"));
+        queue.release(queue.lease());
+
+        assertEquals(0, queue.pending("run1"));
+        assertEquals(1, queue.failed("run1"));
+        assertNull(queue.lease());
+    }
+
+    @Test
+    public void testConcurrentLeasesAreExclusive() throws Exception
+    {
+        FileWorkQueue queue = new FileWorkQueue(dir, 60_000, 3);
+        int tasks = 500;
+        for (int i = 0; i < tasks; i++)
+        {
+            queue.enqueue(WorkTask.summarize("run1", String.format("2510.%05d", i)));
+        }
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<String> duplicates = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < 8; w++)
+        {
+            workers.add(pool.submit(() -> {
+                WorkTask t;
+                while ((t = queue.lease()) != null)
+                {
+                    if (!seen.add(t.getId())) duplicates.add(t.getId());
+                    queue.ack(t);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : workers) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(tasks, seen.size());
+        assertTrue(duplicates.isEmpty(), "Tasks leased twice: " + duplicates);
+        assertEquals(0, queue.pending("run1"));
+    }
+
+    @Test
+    public void testReclaimInterleavedWithLeaseKeepsLiveLease() throws Exception
+    {
+        FileWorkQueue queue = new FileWorkQueue(dir, 100, 3);
+        queue.enqueue(WorkTask.summarize("run1", "2510.00001"));
+        WorkTask crashed = queue.lease();
+        assertNotNull(crashed);
+        Thread.sleep(250);
+
+        // another worker leases the republished copy before the reclaim has cleaned up
+        List<WorkTask> leasedMeanwhile = new ArrayList<>();
+        queue.afterRepublish = () -> {
+            try
+            {
+                leasedMeanwhile.add(queue.lease());
+            } catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+        };
+        assertEquals(1, queue.reclaimExpired());
+        queue.afterRepublish = null;
+
+        WorkTask live = leasedMeanwhile.get(0);
+        assertNotNull(live, "Republished task must be leasable");
+        assertEquals(1, queue.pending("run1"), "The live lease must still count as pending");
+        assertEquals(0, queue.reclaimExpired(), "The live lease is fresh");
+        assertTrue(queue.ack(live), "The reclaim must not delete the live lease");
+        assertEquals(0, queue.pending("run1"));
+    }
+
+    @Test
+    public void testCancelDropsRunTasks() throws Exception
+    {
+        FileWorkQueue queue = new FileWorkQueue(dir, 60_000, 3);
+        queue.enqueue(WorkTask.crawl("run1", 0, "cs.DB", "2025-10-01", "2025-10-01"));
+        queue.enqueue(WorkTask.crawl("run1", 1, "cs.DB", "2025-10-02", "2025-10-02"));
+        queue.enqueue(WorkTask.crawl("run2", 0, "cs.DB", "2025-10-01", "2025-10-01"));
+        WorkTask running = null;
+        while (running == null || !running.getRunId().equals("run1"))
+        {
+            if (running != null) queue.release(running);
+            running = queue.lease();
+        }
+
+        assertFalse(queue.isCancelled("run1"));
+        assertEquals(2, queue.cancel("run1"));
+
+        assertTrue(queue.isCancelled("run1"));
+        assertFalse(queue.isCancelled("run2"));
+        assertEquals(0, queue.pending("run1"));
+        assertEquals(1, queue.pending("run2"));
+        assertFalse(queue.ack(running), "The lease of a cancelled run is gone");
+    }
+}
@@ -0,0 +1,183 @@
+package io.gengdy.pan.service;
+
+import io.gengdy.pan.harness.FakeOaiPmhServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OaiRequestControllerTest
+{
+    private FakeOaiPmhServer oai;
+    private URI page;
+
+    @BeforeEach
+    public void start() throws Exception
+    {
+        oai = new FakeOaiPmhServer();
+        oai.setPapersPerDay(5);
+        page = URI.create(oai.getBaseUrl() + "?verb=ListRecords&metadataPrefix=arXivRaw&from=2025-10-17&until=2025-10-17&set=cs%3Acs%3ADB");
+    }
+
+    @AfterEach
+    public void stop()
+    {
+        oai.close();
+    }
+
+    @Test
+    public void testServiceUnavailableHonorsRetryAfter() throws Exception
+    {
+        oai.setFailureEvery(2);
+        oai.setRetryAfterSeconds(1);
+        OaiRequestController controller = controller(0, 0, 3);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++)
+        {
+            assertTrue(controller.get(page).contains("<ListRecords>"));
+        }
+
+        assertEquals(2, oai.getFailureCount());
+        assertTrue(System.currentTimeMillis() - start >= 2000, "Two Retry-After waits of 1 s");
+        OaiRequestController.Stats stats = controller.stats();
+        assertEquals(5, stats.getResponses());
+        assertEquals(2, stats.getThrottled());
+        assertEquals(2, stats.getRetries());
+        assertTrue(stats.getIntervalMs() > 0, "Throttling must slow the pacing down");
+    }
+
+    @Test
+    public void testRetryAfterIsNotCappedByBackoff() throws Exception
+    {
+        oai.setFailureEvery(2);
+        oai.setRetryAfterSeconds(1);
+        OaiRequestController controller = new OaiRequestController("PAN-test", 2000, 5000, 3, 50, 200, 10_000,
+                0, 10_000, 0);
+
+        controller.get(page);
+        long start = System.currentTimeMillis();
+        controller.get(page);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(1, oai.getFailureCount());
+        assertTrue(elapsed >= 1000, "Retry-After of 1 s must be waited in full, took " + elapsed);
+        assertTrue(elapsed < 1000 + 100 + 500, "Jitter is at most a tenth of Retry-After, took " + elapsed);
+    }
+
+    @Test
+    public void testRetryAfterAboveCeilingFails()
+    {
+        oai.setFailureEvery(1);
+        oai.setRetryAfterSeconds(5);
+        OaiRequestController controller = new OaiRequestController("PAN-test", 2000, 5000, 3, 50, 2000, 1000,
+                0, 10_000, 0);
+
+        long start = System.currentTimeMillis();
+        IOException e = assertThrows(IOException.class, () -> controller.get(page));
+
+        assertTrue(e.getMessage().contains("arxiv.max-retry-after-ms"), e.getMessage());
+        assertEquals(1, oai.getRequestCount(), "No early retry");
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void testWindowCountsOnlyItsRequests() throws Exception
+    {
+        OaiRequestController controller = controller(0, 0, 3);
+        controller.get(page);
+        controller.get(page);
+
+        OaiRequestController.Window window = new OaiRequestController.Window();
+        controller.get(page, window);
+
+        assertEquals(1, controller.stats(window).getResponses());
+        assertEquals(3, controller.stats().getResponses());
+    }
+
+    @Test
+    public void testLatencySampleIsBounded()
+    {
+        OaiRequestController.Window window = new OaiRequestController.Window();
+        for (int i = 1; i <= 100_000; i++)
+        {
+            window.record(i % 1000);
+        }
+        window.record(5000);
+
+        OaiRequestController.Stats stats = window.stats(0);
+        assertEquals(100_001, stats.getResponses());
+        assertEquals(5000, stats.getMax(), "The maximum is exact");
+        assertTrue(Math.abs(stats.getP50() - 500) < 100, "Sampled median: " + stats);
+        assertTrue(Math.abs(stats.getP90() - 900) < 50, "Sampled p90: " + stats);
+    }
+
+    @Test
+    public void testTooManyRequestsWithoutRetryAfterBacksOff() throws Exception
+    {
+        oai.setFailureEvery(1);
+        oai.setFailureStatus(429);
+        oai.setRetryAfterSeconds(-1);
+        OaiRequestController controller = controller(0, 0, 2);
+
+        long start = System.currentTimeMillis();
+        IOException e = assertThrows(IOException.class, () -> controller.get(page));
+
+        assertTrue(e.getMessage().contains("429"));
+        assertEquals(3, oai.getRequestCount(), "One attempt plus two retries");
+        assertTrue(System.currentTimeMillis() - start >= 25 + 50, "Backoff of 50 ms, then 100 ms, half of it jittered");
+    }
+
+    @Test
+    public void testClientErrorIsNotRetried()
+    {
+        OaiRequestController controller = controller(0, 0, 3);
+
+        IOException e = assertThrows(IOException.class, () -> controller.get(URI.create(oai.getBaseUrl() + "?verb=Identify")));
+
+        assertTrue(e.getMessage().contains("400"));
+        assertEquals(1, oai.getRequestCount());
+    }
+
+    @Test
+    public void testPacingFollowsServerLatency() throws Exception
+    {
+        oai.setLatencyMillis(100);
+        OaiRequestController controller = controller(0, 1.0, 3);
+
+        for (int i = 0; i < 5; i++)
+        {
+            controller.get(page);
+        }
+
+        OaiRequestController.Stats stats = controller.stats();
+        assertTrue(stats.getP50() >= 100, stats.toString());
+        assertTrue(stats.getP50() <= stats.getP90() && stats.getP90() <= stats.getP99()
+                && stats.getP99() <= stats.getMax(), stats.toString());
+        assertTrue(stats.getIntervalMs() >= 90, "Interval follows latency x factor: " + stats);
+    }
+
+    @Test
+    public void testMinimumIntervalSpacesRequests() throws Exception
+    {
+        OaiRequestController controller = controller(200, 0, 3);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++)
+        {
+            controller.get(page);
+        }
+
+        assertTrue(System.currentTimeMillis() - start >= 3 * 200);
+    }
+
+    private static OaiRequestController controller(long minIntervalMs, double latencyFactor, int maxRetries)
+    {
+        return new OaiRequestController("PAN-test", 2000, 5000, maxRetries, 50, 2000, 10_000,
+                minIntervalMs, 10_000, latencyFactor);
+    }
+}
@@ -0,0 +1,108 @@
+package io.gengdy.pan.service;
+
+import io.gengdy.pan.model.ChangeType;
+import io.gengdy.pan.model.Paper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaperHistoryServiceTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testClassifiesAgainstMailedVersions() throws Exception
+    {
+        Path file = dir.resolve("history.tsv");
+        PaperHistoryService history = new PaperHistoryService(true, file.toString(), 5, 365);
+        history.record(List.of(paper("2510.00001", "v1", "Original abstract."),
+                paper("2510.00002", "v1", "Another abstract.")));
+
+        // fresh instance reads the file back
+        history = new PaperHistoryService(true, file.toString(), 5, 365);
+        Paper same = paper("2510.00001", "v1", "Original   abstract.");
+        Paper revised = paper("2510.00001", "v2", "Original abstract, now with results.");
+        Paper newVersion = paper("2510.00002", "v3", "Another abstract.");
+        Paper fresh = paper("2510.00003", "v1", "Brand new.");
+        Paper late = paper("2510.00004", "v1", "Submitted long ago.");
+        late.setCreatedDate(LocalDate.of(2025, 9, 1));
+        late.setUpdatedDate(LocalDate.of(2025, 10, 17));
+
+        List<Paper> changed = history.filterChanged(List.of(same, revised, newVersion, fresh, late));
+
+        assertEquals(ChangeType.UNCHANGED, same.getChangeType(), "Whitespace changes are not revisions");
+        assertEquals(ChangeType.REVISED, revised.getChangeType());
+        assertEquals(ChangeType.NEW_VERSION, newVersion.getChangeType());
+        assertEquals(ChangeType.NEW, fresh.getChangeType());
+        assertEquals(ChangeType.LATE, late.getChangeType());
+        assertEquals(List.of(revised, newVersion, fresh, late), changed);
+        assertEquals(List.of(revised, fresh, late), history.needingSummary(changed),
+                "Unchanged abstract of a new version needs no new summary");
+    }
+
+    @Test
+    public void testUnseenLaterVersionOfOldPaperIsNew() throws Exception
+    {
+        PaperHistoryService history = new PaperHistoryService(true, dir.resolve("h.tsv").toString(), 5, 365);
+        Paper replacement = paper("2403.00001", "v3", "Third version of a paper never mailed.");
+        replacement.setCreatedDate(LocalDate.of(2024, 3, 1));
+        replacement.setUpdatedDate(LocalDate.of(2025, 10, 17));
+
+        assertEquals(List.of(replacement), history.filterChanged(List.of(replacement)));
+        assertEquals(ChangeType.NEW, replacement.getChangeType(), "A replacement is not a late arrival");
+    }
+
+    @Test
+    public void testStaleOlderVersionIsIgnored() throws Exception
+    {
+        PaperHistoryService history = new PaperHistoryService(true, dir.resolve("h.tsv").toString(), 5, 365);
+        history.record(List.of(paper("2510.00001", "v2", "Second version.")));
+
+        Paper stale = paper("2510.00001", "v1", "First version.");
+        assertTrue(history.filterChanged(List.of(stale)).isEmpty());
+        assertEquals(ChangeType.UNCHANGED, stale.getChangeType());
+    }
+
+    @Test
+    public void testExportClassifiesLikeTheOriginal() throws Exception
+    {
+        PaperHistoryService history = new PaperHistoryService(true, dir.resolve("h.tsv").toString(), 5, 365);
+        history.record(List.of(paper("2510.00001", "v1", "Mailed abstract.")));
+        Path export = dir.resolve("queue").resolve("history").resolve("run1.tsv");
+        history.exportTo(export);
+
+        PaperHistoryService worker = history.readExport(export);
+        Paper same = paper("2510.00001", "v1", "Mailed abstract.");
+        Paper fresh = paper("2510.00002", "v1", "New abstract.");
+        assertEquals(List.of(fresh), worker.filterChanged(List.of(same, fresh)));
+        assertEquals(ChangeType.UNCHANGED, same.getChangeType());
+
+        Paper other = paper("2510.00001", "v1", "Mailed abstract.");
+        history.readExport(dir.resolve("missing.tsv")).filterChanged(List.of(other));
+        assertEquals(ChangeType.NEW, other.getChangeType(), "Without an export nothing counts as mailed");
+    }
+
+    @Test
+    public void testDisabledPassesEverythingThrough() throws Exception
+    {
+        PaperHistoryService history = new PaperHistoryService(false, dir.resolve("h.tsv").toString(), 5, 365);
+        Paper p = paper("2510.00001", "v1", "Abstract.");
+        history.record(List.of(p));
+
+        assertEquals(List.of(p), history.filterChanged(List.of(p)));
+        assertEquals(ChangeType.NEW, p.getChangeType());
+    }
+
+    private static Paper paper(String id, String version, String abstractText)
+    {
+        Paper p = new Paper(id, "title", "authors", abstractText, "https://arxiv.org/abs/" + id);
+        p.setVersion(version);
+        return p;
+    }
+}
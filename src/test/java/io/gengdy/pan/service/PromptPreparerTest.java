@@ -0,0 +1,88 @@
+package io.gengdy.pan.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromptPreparerTest
+{
+    @Test
+    public void testNormalizeStripsLatexAndBoilerplate()
+    {
+        String raw = "  We study learned cardinality estimators under $\\epsilon$-DP and show an\n"
+                + "$O(\\sqrt{n})$ error bound via \\textbf{\\emph{novel}} analysis.  Experiments confirm it. "
+                + "Code is available at \\url{https://github.com/x/y}. Accepted at VLDB 2026. 12 pages, 4 figures.";
+
+        String cleaned = PromptPreparer.normalize(raw);
+
+        assertEquals("We study learned cardinality estimators under epsilon-DP and show an "
+                + "O(sqrt(n)) error bound via novel analysis. Experiments confirm it.", cleaned);
+    }
+
+    @Test
+    public void testNormalizeKeepsInequalities()
+    {
+        String raw = "For all $k < n$ the bound holds, and for $\\epsilon > 0$ we get a <i>linear</i> rate. "
+                + "The case $m<n$ is easy.<br/> For $m>n$ we need a second pass.";
+
+        assertEquals("For all k < n the bound holds, and for epsilon > 0 we get a linear rate. "
+                + "The case m<n is easy. For m>n we need a second pass.", PromptPreparer.normalize(raw));
+    }
+
+    @Test
+    public void testNormalizeDropsBoilerplateForms()
+    {
+        String raw = "We prove a bound. This paper has been accepted to ICML 2026. To appear in SIGMOD. "
+                + "12 pages, 4 figures, accepted at ICDE. Our code and data are publicly released on github.com/x/y. "
+                + "Code: https://example.org/z. This version corrects a typo in Theorem 2.";
+
+        assertEquals("We prove a bound.", PromptPreparer.normalize(raw));
+    }
+
+    @Test
+    public void testNormalizeKeepsContentSentences()
+    {
+        String[] content = {
+                "We characterize the class of queries accepted by the automaton.",
+                "Proposals accepted at the first stage are re-ranked by a second model.",
+                "Our proof takes 12 pages of case analysis in the worst case.",
+                "We evaluate this version of the protocol against the original one.",
+                "We compare against the crawler at https://example.org and find it misses 30% of pages.",
+                "Models are released weekly, so we study how benchmark scores drift over time.",
+                "The code is available at every node of the network, which removes the coordinator."
+        };
+        for (String sentence : content)
+        {
+            assertEquals(sentence + " We prove tight bounds.",
+                    PromptPreparer.normalize(sentence + " We prove tight bounds."));
+        }
+    }
+
+    @Test
+    public void testTrimToBudgetKeepsWholeSentences()
+    {
+        String text = "One two three. Four five six seven. Eight.";
+
+        assertEquals(text, PromptPreparer.trimToBudget(text, 100));
+        assertEquals("One two three.", PromptPreparer.trimToBudget(text, 5));
+        assertTrue(PromptPreparer.estimateTokens(PromptPreparer.trimToBudget(text, 5)) <= 5);
+    }
+
+    @Test
+    public void testEstimateTokens()
+    {
+        assertEquals(0, PromptPreparer.estimateTokens(""));
+        assertEquals(10, PromptPreparer.estimateTokens("Hello world, this is a test."));
+        assertEquals(4, PromptPreparer.estimateTokens("你好世界"));
+    }
+
+    @Test
+    public void testBuildInputTrimsAbstractOnly()
+    {
+        PromptPreparer preparer = new PromptPreparer(4);
+
+        String input = preparer.buildInput(" Summarize this. ", "Alpha beta. Gamma delta epsilon zeta eta.");
+
+        assertEquals("Summarize this.\n\nAbstract:\nAlpha beta.", input);
+    }
+}
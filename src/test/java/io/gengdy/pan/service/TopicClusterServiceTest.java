@@ -0,0 +1,332 @@
+package io.gengdy.pan.service;
+
+import io.gengdy.pan.model.ChangeType;
+import io.gengdy.pan.model.Paper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopicClusterServiceTest
+{
+    private static final String[][] TOPICS = {
+            {"graph neural network", "message passing", "node classification", "graph", "node", "edge", "oversmoothing"},
+            {"large language model", "instruction tuning", "prompt", "token", "reasoning", "hallucination", "decoding"},
+            {"query optimization", "cardinality estimation", "join order", "query plan", "cost model", "optimizer"},
+            {"vector database", "nearest neighbor search", "index", "embedding", "recall", "quantization"},
+            {"reinforcement learning", "policy gradient", "reward", "agent", "exploration", "environment"},
+            {"time series forecasting", "temporal", "seasonality", "horizon", "sensor", "anomaly"}
+    };
+
+    private static final String[] COMMON = {
+            "efficient", "scalable", "framework", "evaluate", "benchmark", "performance", "experiment",
+            "improve", "accuracy", "significant", "existing", "challenge", "problem", "design", "analysis",
+            "demonstrate", "outperform", "baseline", "real-world", "dataset", "system", "technique", "effective",
+            "robust", "previous", "key", "insight", "theoretical", "practical", "extensive", "state-of-the-art"
+    };
+
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "nu", "pe", "ra", "si", "to", "ve", "zu",
+            "bri", "cho", "dra", "fle", "gro", "kle", "pro", "shu", "tri", "vor"
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testGroupsPapersByTopic()
+    {
+        TopicClusterService service = service(dir.resolve("centroids.tsv"));
+        List<Paper> papers = generate(new Random(1), 0, 300);
+
+        List<Paper> ordered = service.cluster(new ArrayList<>(papers));
+
+        assertEquals(papers.size(), ordered.size());
+        assertEquals(TOPICS.length, ordered.stream().map(Paper::getTopicId).distinct().count(),
+                "One cluster per topic");
+        for (int t = 0; t < TOPICS.length; t++)
+        {
+            int topic = t;
+            Set<Integer> ids = papers.stream().filter(p -> topicOf(p) == topic)
+                    .map(Paper::getTopicId).collect(Collectors.toSet());
+            assertEquals(1, ids.size(), "Topic " + TOPICS[t][0] + " split over " + ids);
+        }
+
+        // clusters are contiguous in the digest and carry a label
+        List<Integer> runs = new ArrayList<>();
+        for (Paper p : ordered)
+        {
+            assertNotNull(p.getTopicLabel());
+            if (runs.isEmpty() || runs.get(runs.size() - 1) != p.getTopicId()) runs.add(p.getTopicId());
+        }
+        assertEquals(TOPICS.length, runs.size());
+        assertTrue(ordered.get(0).getTopicLabel().contains(TOPICS[topicOf(ordered.get(0))][0])
+                        || Arrays.stream(TOPICS[topicOf(ordered.get(0))]).anyMatch(ordered.get(0).getTopicLabel()::contains),
+                "Label should come from the topic: " + ordered.get(0).getTopicLabel());
+    }
+
+    @Test
+    public void testNearDuplicateFollowsOriginal()
+    {
+        TopicClusterService service = service(dir.resolve("centroids.tsv"));
+        List<Paper> papers = generate(new Random(2), 0, 60);
+        Paper original = papers.get(10);
+        Paper copy = new Paper("2510.99999", original.getTitle() + " (extended version)", "Someone",
+                original.getAbstractText() + " We add an appendix.", "https://arxiv.org/abs/2510.99999");
+        papers.add(copy);
+
+        List<Paper> ordered = service.cluster(papers);
+
+        assertEquals(original.getId(), copy.getDuplicateOf());
+        assertEquals(ordered.indexOf(original) + 1, ordered.indexOf(copy));
+        assertEquals(1, ordered.stream().filter(p -> p.getDuplicateOf() != null).count());
+    }
+
+    @Test
+    public void testCentroidsCarryOverToNextDay() throws Exception
+    {
+        Path file = dir.resolve("centroids.tsv");
+        TopicClusterService service = service(file);
+        List<Paper> day1 = service.cluster(generate(new Random(3), 0, 120));
+        service.commit();
+        assertTrue(Files.exists(file));
+        Map<Integer, Integer> topicToCluster = new HashMap<>();
+        for (Paper p : day1) topicToCluster.put(topicOf(p), p.getTopicId());
+
+        List<Paper> day2 = service(file).cluster(generate(new Random(4), 1000, 60));
+        for (Paper p : day2)
+        {
+            assertEquals(topicToCluster.get(topicOf(p)), p.getTopicId(), "Paper " + p.getTitle());
+        }
+    }
+
+    @Test
+    public void testCentroidsAreSavedOnlyOnCommit() throws Exception
+    {
+        Path file = dir.resolve("centroids.tsv");
+        TopicClusterService service = service(file);
+        service.cluster(generate(new Random(3), 0, 120));
+        assertFalse(Files.exists(file), "Nothing is stored before the digest went out");
+
+        // the digest failed, the next run clusters the same papers again
+        service.cluster(generate(new Random(3), 0, 120));
+        service.commit();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(TOPICS.length, lines.size());
+        for (String line : lines)
+        {
+            assertEquals(20.0, Double.parseDouble(line.split("\t")[1]), "The day counts once: " + line);
+        }
+    }
+
+    @Test
+    public void testUnrelatedPapersStayUnclustered() throws Exception
+    {
+        Path file = dir.resolve("centroids.tsv");
+        Random rnd = new Random(8);
+        for (int day = 0; day < 3; day++)
+        {
+            TopicClusterService service = service(file);
+            List<Paper> ordered = service.cluster(unrelated(rnd, day * 100, 40));
+            service.commit();
+
+            assertEquals(40, ordered.size());
+            long grouped = ordered.stream().filter(p -> p.getTopicLabel() != null).count();
+            assertEquals(0, grouped, "Day " + day + ": unrelated papers were grouped");
+        }
+        assertTrue(!Files.exists(file) || Files.readAllLines(file).isEmpty(), "Single papers are no topics");
+    }
+
+    @Test
+    public void testFullStoreEvictsForNewTopics() throws Exception
+    {
+        Path file = dir.resolve("centroids.tsv");
+        TopicClusterService day1 = new TopicClusterService(true, file.toString(), 0.2, 0.8, 3, 8);
+        day1.cluster(focused(new Random(9), 0, 60, 0, 3));
+        day1.commit();
+        assertEquals(3, Files.readAllLines(file).size());
+        rewriteLastSeen(file, LocalDate.now().minusDays(7));
+
+        TopicClusterService day2 = new TopicClusterService(true, file.toString(), 0.2, 0.8, 3, 8);
+        List<Paper> papers = focused(new Random(10), 1000, 60, 3, 6);
+        day2.cluster(papers);
+        day2.commit();
+
+        for (int t = 3; t < 6; t++)
+        {
+            int topic = t;
+            Set<Integer> ids = papers.stream().filter(p -> topicOf(p) == topic)
+                    .map(Paper::getTopicId).collect(Collectors.toSet());
+            assertEquals(1, ids.size(), "Topic " + TOPICS[t][0] + " split over " + ids);
+            assertTrue(ids.iterator().next() >= 3, "New topics get new clusters despite a full store");
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.stream().allMatch(l -> Integer.parseInt(l.split("\t")[0]) >= 3),
+                "Yesterday's topics are evicted: " + lines);
+    }
+
+    @Test
+    public void testUpdatesAreNotClustered()
+    {
+        List<Paper> papers = generate(new Random(11), 0, 60);
+        for (int i = 0; i < 10; i++) papers.get(i).setChangeType(ChangeType.REVISED);
+
+        List<Paper> ordered = service(dir.resolve("centroids.tsv")).cluster(papers);
+
+        assertEquals(60, ordered.size());
+        assertEquals(papers.subList(0, 10), ordered.subList(50, 60), "Updates follow the fresh papers unchanged");
+        assertTrue(ordered.subList(50, 60).stream().allMatch(p -> p.getTopicId() == -1));
+        assertTrue(ordered.subList(0, 50).stream().allMatch(p -> p.getTopicId() >= 0));
+    }
+
+    @Test
+    public void testSmallDigestStaysFlat()
+    {
+        List<Paper> papers = generate(new Random(5), 0, 5);
+        List<Paper> ordered = service(dir.resolve("centroids.tsv")).cluster(papers);
+
+        assertSame(papers, ordered);
+        assertTrue(papers.stream().allMatch(p -> p.getTopicLabel() == null));
+    }
+
+    /**
+     * Wall-clock bound, only with -Dpan.loadtest=true like PipelineLoadTest.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "pan.loadtest", matches = "true")
+    public void testThousandsOfPapersUnderOneSecond()
+    {
+        TopicClusterService service = service(dir.resolve("centroids.tsv"));
+        service.cluster(generate(new Random(6), 0, 3000)); // warm-up
+        service.commit(); // the measured day starts from stored centroids
+
+        List<Paper> papers = generate(new Random(7), 10000, 3000);
+        long start = System.nanoTime();
+        service.cluster(papers);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(millis < 1000, "Clustering took " + millis + " ms");
+    }
+
+    private static TopicClusterService service(Path file)
+    {
+        return new TopicClusterService(true, file.toString(), 0.2, 0.8, 64, 8);
+    }
+
+    /**
+     * Papers round-robin over the topics; the topic index is kept in the author field.
+     */
+    private static List<Paper> generate(Random rnd, int firstId, int count)
+    {
+        List<Paper> papers = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            int t = i % TOPICS.length;
+            String[] terms = TOPICS[t];
+            String title = capitalize(pick(rnd, COMMON)) + " " + terms[rnd.nextInt(2)] + " for " + pick(rnd, terms);
+            StringBuilder abs = new StringBuilder();
+            int sentences = 5 + rnd.nextInt(4);
+            for (int s = 0; s < sentences; s++)
+            {
+                abs.append("The ").append(pick(rnd, COMMON)).append(' ').append(pick(rnd, terms));
+                for (int w = 0; w < 8 + rnd.nextInt(8); w++)
+                {
+                    int kind = rnd.nextInt(6);
+                    abs.append(' ').append(kind < 2 ? pick(rnd, terms) : kind < 4 ? pick(rnd, COMMON) : rareWord(rnd));
+                }
+                abs.append(". ");
+            }
+            String id = String.format("2510.%05d", firstId + i);
+            papers.add(new Paper(id, title, "topic-" + t, abs.toString(), "https://arxiv.org/abs/" + id));
+        }
+        return papers;
+    }
+
+    /**
+     * Papers without a shared topic, only common and made-up words.
+     */
+    private static List<Paper> unrelated(Random rnd, int firstId, int count)
+    {
+        List<Paper> papers = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            String title = capitalize(pick(rnd, COMMON)) + " " + rareWord(rnd) + " " + rareWord(rnd);
+            StringBuilder abs = new StringBuilder();
+            for (int w = 0; w < 80; w++)
+            {
+                abs.append(rnd.nextInt(3) == 0 ? pick(rnd, COMMON) : rareWord(rnd)).append(w % 12 == 11 ? ". " : " ");
+            }
+            String id = String.format("2511.%05d", firstId + i);
+            papers.add(new Paper(id, title, "unrelated", abs.toString(), "https://arxiv.org/abs/" + id));
+        }
+        return papers;
+    }
+
+    /**
+     * Papers round-robin over the topics from..to, without the words all topics share.
+     */
+    private static List<Paper> focused(Random rnd, int firstId, int count, int from, int to)
+    {
+        List<Paper> papers = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            int t = from + i % (to - from);
+            String[] terms = TOPICS[t];
+            StringBuilder abs = new StringBuilder();
+            for (int w = 0; w < 60; w++)
+            {
+                abs.append(rnd.nextInt(2) == 0 ? pick(rnd, terms) : rareWord(rnd)).append(w % 12 == 11 ? ". " : " ");
+            }
+            String id = String.format("2512.%05d", firstId + i);
+            papers.add(new Paper(id, capitalize(terms[rnd.nextInt(2)]) + " " + rareWord(rnd), "topic-" + t,
+                    abs.toString(), "https://arxiv.org/abs/" + id));
+        }
+        return papers;
+    }
+
+    private static void rewriteLastSeen(Path file, LocalDate day) throws Exception
+    {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file))
+        {
+            String[] p = line.split("\t", -1);
+            p[2] = day.toString();
+            lines.add(String.join("\t", p));
+        }
+        Files.write(file, lines);
+    }
+
+    /**
+     * One of 8000 made-up words, standing in for the long tail of real abstracts.
+     */
+    private static String rareWord(Random rnd)
+    {
+        StringBuilder w = new StringBuilder();
+        for (int i = 0; i < 3; i++) w.append(SYLLABLES[rnd.nextInt(SYLLABLES.length)]);
+        return w.toString();
+    }
+
+    private static int topicOf(Paper p)
+    {
+        return Integer.parseInt(p.getAuthors().substring("topic-".length()));
+    }
+
+    private static String pick(Random rnd, String[] words)
+    {
+        return words[rnd.nextInt(words.length)];
+    }
+
+    private static String capitalize(String s)
+    {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}